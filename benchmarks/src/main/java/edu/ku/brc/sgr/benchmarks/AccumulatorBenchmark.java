@@ -0,0 +1,144 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+
+import edu.ku.brc.sgr.BatchMatchResultAccumulator;
+import edu.ku.brc.sgr.BatchMatchResults;
+import edu.ku.brc.sgr.BatchMatchResultsColumnar;
+import edu.ku.brc.sgr.BatchMatchResultsInFile;
+import edu.ku.brc.sgr.BatchMatchResultsLog;
+import edu.ku.brc.sgr.BatchMatcher;
+import edu.ku.brc.sgr.MatchResults;
+import edu.ku.brc.sgr.SGRMatcher;
+
+/**
+ * Cost of recording one item's results with each of the accumulators.
+ * The file backed accumulators write to a temporary file that is removed
+ * after every iteration.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccumulatorBenchmark
+{
+    private static final int N_RESULTS = 1024;
+    
+    @Param({"memory", "tsv", "log", "columnar"})
+    public String accumulator;
+    
+    @Param({"10"})
+    public int matchesPerItem;
+    
+    private SGRMatcher matcher;
+    private List<MatchResults> results;
+    private File file;
+    private BatchMatchResultAccumulator acc;
+    private int next = 0;
+    
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception
+    {
+        matcher = BatchMatcher.getMatcherFactory().build();
+        final SpecimenRecords records = new SpecimenRecords(42);
+        results = Lists.newArrayListWithCapacity(N_RESULTS);
+        for (int i = 0; i < N_RESULTS; i++)
+        {
+            results.add(records.results("item" + i, matchesPerItem));
+        }
+    }
+    
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws IOException
+    {
+        file = File.createTempFile("sgr-bench", "." + accumulator);
+        file.delete();
+        if (accumulator.equals("memory"))
+        {
+            acc = new BatchMatchResults(matcher);
+        } 
+        else if (accumulator.equals("tsv"))
+        {
+            acc = new BatchMatchResultsInFile(file.getPath(), matcher);
+        } 
+        else if (accumulator.equals("log"))
+        {
+            acc = new BatchMatchResultsLog(file.getPath(), matcher);
+        } 
+        else if (accumulator.equals("columnar"))
+        {
+            acc = new BatchMatchResultsColumnar(file.getPath(), matcher);
+        } 
+        else
+        {
+            throw new IllegalArgumentException("unknown accumulator: " + accumulator);
+        }
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws IOException
+    {
+        if (acc instanceof BatchMatchResultsInFile) ((BatchMatchResultsInFile) acc).close();
+        if (acc instanceof BatchMatchResultsLog) ((BatchMatchResultsLog) acc).close();
+        if (acc instanceof BatchMatchResultsColumnar) ((BatchMatchResultsColumnar) acc).close();
+        for (File f : file.getParentFile().listFiles())
+        {
+            if (f.getName().startsWith(file.getName())) f.delete();
+        }
+    }
+    
+    @Benchmark
+    public int addResult()
+    {
+        // Matched ids must stay unique within an iteration for the 
+        // accumulators that track completed ids.
+        final MatchResults result = results.get(next % N_RESULTS);
+        acc.addResult(result.withMatchedId(result.matchedId + "-" + next++));
+        return acc.nCompleted();
+    }
+}
@@ -0,0 +1,101 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.ku.brc.sgr.BlockingJobQueue;
+
+/**
+ * Throughput of handing jobs to {@link BlockingJobQueue} workers. Each job
+ * burns a small, fixed amount of CPU so the numbers reflect the cost of 
+ * the handoff rather than of the work.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingJobQueueBenchmark
+{
+    public static final int JOBS_PER_INVOCATION = 1000;
+    
+    @Param({"1", "4", "16", "64"})
+    public int nThreads;
+    
+    @Param({"100"})
+    public int workTokens;
+    
+    private BlockingJobQueue<Integer> queue;
+    
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        queue = new BlockingJobQueue<Integer>(nThreads, new BlockingJobQueue.Worker<Integer>()
+        {
+            @Override
+            public void doWork(Integer work)
+            {
+                Blackhole.consumeCPU(workTokens);
+            }
+        });
+        queue.startThreads();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        queue.stopThreads();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(JOBS_PER_INVOCATION)
+    public int handoff() throws Exception
+    {
+        for (int i = 0; i < JOBS_PER_INVOCATION; i++)
+        {
+            queue.addWork(i);
+        }
+        queue.waitForAllJobsToComplete();
+        return queue.getTotalJobsFinished();
+    }
+}
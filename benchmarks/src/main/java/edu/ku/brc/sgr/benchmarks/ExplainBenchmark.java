@@ -0,0 +1,106 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr.benchmarks;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.impl.XMLResponseParser;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.ku.brc.sgr.Match;
+import edu.ku.brc.sgr.SGRRecord;
+
+/**
+ * Response handling on the match path: parsing explanations into per field
+ * score contributions, and turning a complete XML MLT response into 
+ * records and matches.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExplainBenchmark
+{
+    private List<String> explanations;
+    private String response;
+    private SGRRecord record;
+    private int next = 0;
+    
+    @Setup
+    public void setUp()
+    {
+        explanations = ExplainCorpus.explanations(60, 7);
+        response = ExplainCorpus.mltResponse(10, 11);
+        record = new SpecimenRecords(42).next();
+    }
+    
+    @Benchmark
+    public float[] fieldContributions()
+    {
+        final String explained = explanations.get(next++ % explanations.size());
+        return new Match(record, 1.0f, explained).fieldContributions();
+    }
+    
+    @Benchmark
+    public Map<String, Float> fieldScoreContributions()
+    {
+        final String explained = explanations.get(next++ % explanations.size());
+        return new Match(record, 1.0f, explained).fieldScoreContributions();
+    }
+    
+    @Benchmark
+    public void parseResponse(Blackhole bh)
+    {
+        final QueryResponse resp = new QueryResponse(
+                new XMLResponseParser().processResponse(new StringReader(response)), null);
+        
+        @SuppressWarnings("unchecked")
+        final NamedList<Object> explain = (NamedList<Object>) resp.getDebugMap().get("explain");
+        for (SolrDocument doc : resp.getResults())
+        {
+            final SGRRecord match = SGRRecord.fromSolrDocument(doc);
+            final float score = (Float) doc.getFieldValue("score");
+            bh.consume(new Match(match, score, (String) explain.get(match.id)).fieldContributions());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.ku.brc.sgr.SGRRecord;
+
+/**
+ * Generated SOLR output for the parsing benchmarks: explanations in the
+ * text format Lucene produces for MLT queries, and a complete XML MLT 
+ * response, both over {@link SpecimenRecords}. None of it comes from a real
+ * index; the terms and weights only have the shape of real output, and the
+ * idf and product values are not consistent with each other. Use it to time
+ * parsing, not to study scoring.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ExplainCorpus
+{
+    /**
+     * @return <code>n</code> explanations of matches against reproducible 
+     * synthetic records.
+     */
+    public static ImmutableList<String> explanations(int n, long seed)
+    {
+        final SpecimenRecords records = new SpecimenRecords(seed);
+        final Random random = new Random(seed);
+        final ImmutableList.Builder<String> explanations = ImmutableList.builder();
+        for (int i = 0; i < n; i++)
+        {
+            explanations.add(explain(records.next(), 10.0f * random.nextFloat()));
+        }
+        return explanations.build();
+    }
+    
+    /**
+     * @return the XML of an MLT response with <code>nDocs</code> synthetic
+     * records, best first, and the explanation of each under debug.
+     */
+    public static String mltResponse(int nDocs, long seed)
+    {
+        final List<SGRRecord> docs = new SpecimenRecords(seed).next(nDocs);
+        final Random random = new Random(seed);
+        final float[] scores = new float[nDocs];
+        float score = 5.0f + 5.0f * random.nextFloat();
+        for (int i = 0; i < nDocs; i++)
+        {
+            scores[i] = score;
+            score *= 0.8f + 0.2f * random.nextFloat();
+        }
+        
+        final StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<response>\n");
+        sb.append("<lst name=\"responseHeader\"><int name=\"status\">0</int>")
+          .append("<int name=\"QTime\">14</int></lst>\n");
+        sb.append("<result name=\"response\" numFound=\"").append(20 * nDocs)
+          .append("\" start=\"0\" maxScore=\"").append(nDocs > 0 ? scores[0] : 0.0f)
+          .append("\">\n");
+        for (int d = 0; d < nDocs; d++)
+        {
+            final SGRRecord doc = docs.get(d);
+            sb.append("<doc><float name=\"score\">").append(scores[d])
+              .append("</float><str name=\"id\">").append(doc.id).append("</str>\n");
+            for (int f = 0; f < doc.nFields(); f++)
+            {
+                sb.append("<arr name=\"").append(doc.fieldName(f)).append("\">");
+                for (int i = 0; i < doc.nValues(f); i++)
+                {
+                    sb.append("<str>").append(escape(doc.value(f, i))).append("</str>");
+                }
+                sb.append("</arr>\n");
+            }
+            sb.append("</doc>\n");
+        }
+        sb.append("</result>\n<lst name=\"debug\"><lst name=\"explain\">\n");
+        for (int d = 0; d < nDocs; d++)
+        {
+            final SGRRecord doc = docs.get(d);
+            sb.append("<str name=\"").append(doc.id).append("\">")
+              .append(escape(explain(doc, scores[d]))).append("</str>\n");
+        }
+        sb.append("</lst></lst>\n</response>\n");
+        return sb.toString();
+    }
+    
+    /**
+     * @return an explanation in the text format Lucene produces for an MLT
+     * query matching <code>record</code> on each of its fields.
+     */
+    public static String explain(SGRRecord record, float score)
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(score).append(" = (MATCH) sum of:\n");
+        float remaining = score;
+        for (int i = 0; i < record.nFields(); i++)
+        {
+            final String field = record.fieldName(i);
+            final float part = (i == record.nFields() - 1) ? remaining : remaining / 2;
+            remaining -= part;
+            final String term = record.value(i, 0).split("[ ,;.]")[0].toLowerCase();
+            sb.append("  ").append(part).append(" = (MATCH) weight(").append(field).append(':')
+              .append(term).append(" in ").append(record.id).append("), product of:\n");
+            sb.append("    ").append(part * 0.31f).append(" = queryWeight(").append(field)
+              .append(':').append(term).append("), product of:\n");
+            sb.append("      5.4381933 = idf(docFreq=1417, maxDocs=412032)\n");
+            sb.append("      0.05700812 = queryNorm\n");
+            sb.append("    ").append(part / 0.31f).append(" = (MATCH) fieldWeight(").append(field)
+              .append(':').append(term).append(" in ").append(record.id).append("), product of:\n");
+            sb.append("      1.0 = tf(termFreq(").append(field).append(':').append(term)
+              .append(")=1)\n");
+            sb.append("      5.4381933 = idf(docFreq=1417, maxDocs=412032)\n");
+            sb.append("      0.5 = fieldNorm(field=").append(field).append(", doc=")
+              .append(record.id).append(")\n");
+        }
+        return sb.toString();
+    }
+    
+    private static String escape(String s)
+    {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,86 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.SolrDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+
+import edu.ku.brc.sgr.SGRRecord;
+
+/**
+ * Cost of converting records to and from the SolrDocuments sent in MLT
+ * requests and received in their responses.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SGRRecordBenchmark
+{
+    private static final int N_RECORDS = 1024;
+    
+    private List<SGRRecord> records;
+    private List<SolrDocument> documents;
+    private int next = 0;
+    
+    @Setup
+    public void setUp()
+    {
+        records = new SpecimenRecords(42).next(N_RECORDS);
+        documents = Lists.newArrayListWithCapacity(N_RECORDS);
+        for (SGRRecord record : records)
+        {
+            documents.add(record.asSolrDocument());
+        }
+    }
+    
+    @Benchmark
+    public SolrDocument asSolrDocument()
+    {
+        return records.get(next++ & (N_RECORDS - 1)).asSolrDocument();
+    }
+    
+    @Benchmark
+    public SGRRecord fromSolrDocument()
+    {
+        return SGRRecord.fromSolrDocument(documents.get(next++ & (N_RECORDS - 1)));
+    }
+}
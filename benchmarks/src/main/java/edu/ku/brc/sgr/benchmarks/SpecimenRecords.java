@@ -0,0 +1,121 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import edu.ku.brc.sgr.Match;
+import edu.ku.brc.sgr.MatchResults;
+import edu.ku.brc.sgr.SGRRecord;
+
+/**
+ * Generates reproducible synthetic herbarium specimen records with the 
+ * fields and value shapes of the real index.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class SpecimenRecords
+{
+    private static final String[] SURNAMES = {
+        "Smith", "Stevens", "McGregor", "Barkley", "Brooks", "Churchill", "Hartman", 
+        "Kolstad", "Lipscomb", "Morse", "Nelson", "Ramirez", "Thompson", "Waterfall"
+    };
+    private static final String[] COUNTIES = {
+        "Douglas", "Jefferson", "Riley", "Shawnee", "Cherokee", "Barber", "Cowley", 
+        "Ellis", "Finney", "Kiowa", "Morton", "Stafford"
+    };
+    private static final String[] GENERA = {
+        "Carex", "Quercus", "Andropogon", "Solidago", "Asclepias", "Euphorbia", 
+        "Panicum", "Symphyotrichum", "Dalea", "Oenothera"
+    };
+    private static final String[] EPITHETS = {
+        "alba", "gerardii", "canadensis", "tuberosa", "missouriensis", "virgatum", 
+        "ericoides", "purpurea", "macrocarpa", "biennis", "stricta", "glauca"
+    };
+    
+    private final Random random;
+    private int nextId = 1;
+    
+    public SpecimenRecords(long seed)
+    {
+        random = new Random(seed);
+    }
+    
+    public SGRRecord next()
+    {
+        final SGRRecord.Builder b = SGRRecord.builder(String.valueOf(nextId++));
+        final int nCollectors = 1 + random.nextInt(3);
+        for (int i = 0; i < nCollectors; i++)
+        {
+            b.put("collectors", pick(SURNAMES) + ", " + (char) ('A' + random.nextInt(26)) + ".");
+        }
+        b.put("collector_number", String.valueOf(1 + random.nextInt(20000)));
+        b.put("location", pick(COUNTIES) + " Co.; " + (1 + random.nextInt(15)) 
+                + " mi " + pick(new String[] {"N", "S", "E", "W", "NE", "SW"}) 
+                + " of " + pick(COUNTIES) + ", along roadside in prairie");
+        final int year = 1880 + random.nextInt(130);
+        final int month = 1 + random.nextInt(12);
+        final int day = 1 + random.nextInt(28);
+        b.put("date_collected", String.format("%04d-%02d-%02d", year, month, day));
+        b.put("date_split", String.valueOf(year));
+        b.put("date_split", String.valueOf(month));
+        b.put("date_split", String.valueOf(day));
+        b.put("scientific_name", pick(GENERA) + " " + pick(EPITHETS));
+        return b.build();
+    }
+    
+    public List<SGRRecord> next(int n)
+    {
+        final List<SGRRecord> records = Lists.newArrayListWithCapacity(n);
+        for (int i = 0; i < n; i++) records.add(next());
+        return records;
+    }
+    
+    /**
+     * @return results for <code>matchedId</code> with <code>nMatches</code>
+     * synthetic candidates, each with a text explanation over the usual 
+     * similarity fields.
+     */
+    public MatchResults results(String matchedId, int nMatches)
+    {
+        final ImmutableList.Builder<Match> matches = ImmutableList.builder();
+        float maxScore = 0.0f;
+        for (int i = 0; i < nMatches; i++)
+        {
+            final SGRRecord record = next();
+            final float score = 10.0f * random.nextFloat();
+            maxScore = Math.max(maxScore, score);
+            matches.add(new Match(record, score, ExplainCorpus.explain(record, score)));
+        }
+        return new MatchResults(matchedId, random.nextInt(50), maxScore, matches.build());
+    }
+    
+    private String pick(String[] values)
+    {
+        return values[random.nextInt(values.length)];
+    }
+}
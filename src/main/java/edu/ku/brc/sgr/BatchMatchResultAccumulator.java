@@ -17,8 +17,6 @@
  */
 package edu.ku.brc.sgr;
 
-import com.google.common.collect.ImmutableSet;
-
 /**
  * @author ben
  *
@@ -30,7 +28,7 @@ import com.google.common.collect.ImmutableSet;
 public interface BatchMatchResultAccumulator
 {
     void addResult(final MatchResults result);
-    ImmutableSet<String> getCompletedIds();
+    CompletedIds getCompletedIds();
     int nCompleted();
     SGRMatcher getMatcher();
 }
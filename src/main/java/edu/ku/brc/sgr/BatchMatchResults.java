@@ -22,8 +22,6 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
-import com.google.common.collect.ImmutableSet;
-
 /**
  * @author ben
  *
@@ -37,6 +35,7 @@ public class BatchMatchResults implements BatchMatchResultAccumulator
     final private SGRMatcher matcher;
     
     final private List<MatchResults> matches = new LinkedList<MatchResults>();
+    final private CompletedIdSet completedIds = new CompletedIdSet();
     
     public BatchMatchResults(final SGRMatcher matcher) {
         this.matcher = matcher;
@@ -45,13 +44,12 @@ public class BatchMatchResults implements BatchMatchResultAccumulator
     @Override
     synchronized public void addResult(final MatchResults result) {
         matches.add(result);
+        completedIds.add(result.matchedId);
     }
     
     @Override
-    synchronized public ImmutableSet<String> getCompletedIds() {
-        final ImmutableSet.Builder<String> completed = ImmutableSet.builder();
-        for (MatchResults r: matches) { completed.add(r.matchedId); }
-        return completed.build();
+    public CompletedIds getCompletedIds() {
+        return completedIds;
     }
     
     public Collection<MatchResults> getResults()
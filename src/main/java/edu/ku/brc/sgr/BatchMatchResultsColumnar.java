@@ -0,0 +1,271 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Spools the complete top N matches of each result into a columnar file, 
+ * so candidates can be reviewed later without re-running the queries.
+ * 
+ * The file holds the base query followed by blocks of up to 
+ * {@link #blockSize} results. Each block carries its own dictionary of the
+ * ids it uses, any field names not seen in earlier blocks, and then one
+ * column each for the result ids, qTimes, max scores and match counts, the
+ * match ids and scores, and one score contribution column per field. 
+ * Read the file with {@link ColumnarMatchReader}.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class BatchMatchResultsColumnar implements BatchMatchResultAccumulator
+{
+    static final int MAGIC = 0x53475243; // "SGRC"
+    static final int VERSION = 1;
+    
+    public final boolean resuming;
+    public final int blockSize;
+    
+    private final SGRMatcher matcher;
+    private final CompletedIdSet completedIds = new CompletedIdSet();
+    private final DataOutputStream output;
+    
+    private final List<String> fieldNames = Lists.newArrayList();
+    private final Map<String, Integer> fieldCodes = Maps.newHashMap();
+    private int fieldsWritten = 0;
+    
+    private final List<MatchResults> pending = Lists.newArrayList();
+    
+    public BatchMatchResultsColumnar(String fileName, SGRMatcher matcher) throws IOException
+    {
+        this(fileName, matcher, 1024);
+    }
+
+    public BatchMatchResultsColumnar(String fileName, SGRMatcher matcher, int blockSize) 
+        throws IOException
+    {
+        this.matcher = matcher;
+        this.blockSize = blockSize;
+        
+        final File file = new File(fileName);
+        resuming = file.exists() && file.length() > 0;
+        
+        if (resuming)
+        {
+            final ColumnarMatchReader in = new ColumnarMatchReader(file);
+            final long validLength;
+            try
+            {
+                if (!EquateSolrParams.equals(matcher.getBaseQuery(), in.getParams()))
+                {
+                    throw new IllegalArgumentException(
+                            "cannot resume batchmatch with inconsistent query");
+                }
+                validLength = in.readCompletedIds(completedIds);
+                for (String field : in.getFieldNames()) { fieldCode(field); }
+                fieldsWritten = fieldNames.size();
+            } finally
+            {
+                in.close();
+            }
+            
+            if (validLength < file.length())
+            {
+                final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try { raf.setLength(validLength); }
+                finally { raf.close(); }
+            }
+        }
+        
+        output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file, true), 1 << 16));
+        
+        if (!resuming)
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(matcher.getBaseQuery().toString());
+            output.flush();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see edu.ku.brc.sgr.BatchMatchResultAccumulator#addResult(edu.ku.brc.sgr.MatchResults)
+     */
+    @Override
+    synchronized public void addResult(MatchResults result)
+    {
+        pending.add(result);
+        completedIds.add(result.matchedId);
+        if (pending.size() >= blockSize)
+        {
+            try { writeBlock(); }
+            catch (IOException e) { throw new RuntimeException(e); }
+        }
+    }
+    
+    synchronized public void close() throws IOException
+    {
+        writeBlock();
+        output.close();
+    }
+    
+    private int fieldCode(String field)
+    {
+        Integer code = fieldCodes.get(field);
+        if (code == null)
+        {
+            code = fieldNames.size();
+            fieldNames.add(field);
+            fieldCodes.put(field, code);
+        }
+        return code;
+    }
+    
+    private void writeBlock() throws IOException
+    {
+        if (pending.isEmpty()) return;
+        
+        final Map<String, Integer> ids = Maps.newHashMap();
+        final List<String> dictionary = Lists.newArrayList();
+        
+        final int nRows = pending.size();
+        final int[] rowIds = new int[nRows];
+        final int[] qTimes = new int[nRows];
+        final float[] maxScores = new float[nRows];
+        final int[] nMatches = new int[nRows];
+        
+        int nTotal = 0;
+        for (MatchResults result : pending) { nTotal += result.size(); }
+        final int[] matchIds = new int[nTotal];
+        final float[] scores = new float[nTotal];
+        final List<float[]> contributions = Lists.newArrayList();
+        
+        int m = 0;
+        for (int r = 0; r < nRows; r++)
+        {
+            final MatchResults result = pending.get(r);
+            rowIds[r] = code(result.matchedId, ids, dictionary);
+            qTimes[r] = result.qTime;
+            maxScores[r] = result.maxScore;
+            nMatches[r] = result.size();
+            
+            for (int i = 0; i < result.size(); i++)
+            {
+                matchIds[m] = code(result.getMatchId(i), ids, dictionary);
+                scores[m] = result.getScore(i);
+                if (!result.hasRecords()) 
+                {
+                    m++;
+                    continue;
+                }
+                final float[] byField = result.getMatches().get(i).fieldContributions();
+                for (int code = 0; code < byField.length; code++)
+                {
+                    if (byField[code] == 0.0f) continue;
+                    final int f = fieldCode(FieldDictionary.SHARED.nameOf(code));
+                    while (contributions.size() <= f) contributions.add(new float[nTotal]);
+                    contributions.get(f)[m] = byField[code];
+                }
+                m++;
+            }
+        }
+        while (contributions.size() < fieldNames.size()) contributions.add(new float[nTotal]);
+        
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(nTotal * 32 + nRows * 32);
+        final DataOutputStream block = new DataOutputStream(bytes);
+        block.writeInt(nRows);
+        block.writeInt(nTotal);
+        
+        block.writeInt(dictionary.size());
+        for (String id : dictionary) { block.writeUTF(id); }
+        
+        block.writeInt(fieldNames.size() - fieldsWritten);
+        for (String field : fieldNames.subList(fieldsWritten, fieldNames.size())) 
+        { 
+            block.writeUTF(field); 
+        }
+        
+        for (int v : rowIds) block.writeInt(v);
+        for (int v : qTimes) block.writeInt(v);
+        for (float v : maxScores) block.writeFloat(v);
+        for (int v : nMatches) block.writeInt(v);
+        for (int v : matchIds) block.writeInt(v);
+        for (float v : scores) block.writeFloat(v);
+        for (float[] column : contributions)
+        {
+            for (float v : column) block.writeFloat(v);
+        }
+        block.flush();
+        
+        output.writeInt(bytes.size());
+        bytes.writeTo(output);
+        output.flush();
+        
+        fieldsWritten = fieldNames.size();
+        pending.clear();
+    }
+    
+    private static int code(String id, Map<String, Integer> ids, List<String> dictionary)
+    {
+        Integer code = ids.get(id);
+        if (code == null)
+        {
+            code = dictionary.size();
+            dictionary.add(id);
+            ids.put(id, code);
+        }
+        return code;
+    }
+
+    /* (non-Javadoc)
+     * @see edu.ku.brc.sgr.BatchMatchResultAccumulator#getCompletedIds()
+     */
+    @Override
+    public CompletedIds getCompletedIds()
+    {
+        return completedIds;
+    }
+
+    @Override
+    public int nCompleted()
+    {
+        return completedIds.size();
+    }
+
+    @Override
+    public SGRMatcher getMatcher()
+    {
+        return matcher;
+    }
+}
@@ -24,14 +24,10 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Set;
 
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.servlet.SolrRequestParsers;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
-
 /**
  * @author ben
  *
@@ -45,7 +41,7 @@ public class BatchMatchResultsInFile implements BatchMatchResultAccumulator
     public final boolean resuming;
     
     private final SGRMatcher matcher;
-    private final Set<String> completedIds;
+    private final CompletedIdSet completedIds;
     private PrintWriter output;
     
     public BatchMatchResultsInFile(String fileName, SGRMatcher matcher) throws IOException
@@ -60,7 +56,7 @@ public class BatchMatchResultsInFile implements BatchMatchResultAccumulator
 
         resuming = (in != null);
 
-        completedIds = Sets.newHashSet();
+        completedIds = new CompletedIdSet();
         if (resuming)
         {
             SolrParams oldSolrParams = SolrRequestParsers.parseQueryString(in.readLine());
@@ -108,9 +104,9 @@ public class BatchMatchResultsInFile implements BatchMatchResultAccumulator
      * @see edu.ku.brc.sgr.BatchMatchResultAccumulator#getCompletedIds()
      */
     @Override
-    public ImmutableSet<String> getCompletedIds()
+    public CompletedIds getCompletedIds()
     {
-        return ImmutableSet.copyOf(completedIds);
+        return completedIds;
     }
 
      @Override
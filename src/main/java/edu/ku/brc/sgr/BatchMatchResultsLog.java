@@ -0,0 +1,365 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.servlet.SolrRequestParsers;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.CountingInputStream;
+
+/**
+ * Spools batch match results into an append-only binary log. Each record is
+ * a length prefixed (id, qTime, maxScore) entry. Writes are buffered and 
+ * flushed in groups of {@link #flushEvery} records or every 
+ * {@link #flushMillis} ms. 
+ * 
+ * Every {@link #checkpointEvery} records a sorted index of all completed ids
+ * is written next to the log. Resuming maps that index and only reads the 
+ * part of the log written after it. A partial record left at the end of the
+ * log by a crash is truncated on resume.
+ * 
+ * Use {@link #toTsv(File, File)} to convert a log into the format written by
+ * {@link BatchMatchResultsInFile}.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class BatchMatchResultsLog implements BatchMatchResultAccumulator
+{
+    private static final int MAGIC = 0x5347524c; // "SGRL"
+    private static final int VERSION = 1;
+    
+    public final boolean resuming;
+    public final int flushEvery;
+    public final long flushMillis;
+    public final int checkpointEvery;
+    
+    private final SGRMatcher matcher;
+    private final File indexFile;
+    // Ids logged since the index was last written.
+    private volatile CompletedIdSet idsInLog = new CompletedIdSet();
+    private final List<String> sinceCheckpoint = Lists.newArrayList();
+    private volatile SortedIdIndex index;
+    
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private long logLength;
+    private int unflushed = 0;
+    private long lastFlush = System.currentTimeMillis();
+    
+    private final CompletedIds completedIds = new CompletedIds()
+    {
+        @Override
+        public boolean contains(String id)
+        {
+            return idsInLog.contains(id) || index.contains(id);
+        }
+
+        @Override
+        public int size()
+        {
+            return idsInLog.size() + index.size();
+        }
+    };
+    
+    public BatchMatchResultsLog(String fileName, SGRMatcher matcher) throws IOException
+    {
+        this(fileName, matcher, 1000, 1000, 100000);
+    }
+    
+    public BatchMatchResultsLog(String fileName, SGRMatcher matcher, int flushEvery, 
+                                long flushMillis, int checkpointEvery) throws IOException
+    {
+        this.matcher = matcher;
+        this.flushEvery = flushEvery;
+        this.flushMillis = flushMillis;
+        this.checkpointEvery = checkpointEvery;
+        
+        final File file = new File(fileName);
+        indexFile = new File(fileName + ".idx");
+        resuming = file.exists() && file.length() > 0;
+        
+        if (resuming)
+        {
+            final LogReader in = new LogReader(file);
+            try
+            {
+                if (!EquateSolrParams.equals(matcher.getBaseQuery(), in.params))
+                {
+                    throw new IllegalArgumentException(
+                            "cannot resume batchmatch with inconsistent query");
+                }
+                
+                index = SortedIdIndex.EMPTY;
+                if (indexFile.exists())
+                {
+                    final SortedIdIndex saved = SortedIdIndex.map(indexFile);
+                    if (saved.logOffset <= file.length())
+                    {
+                        index = saved;
+                        in.skipTo(saved.logOffset);
+                    }
+                }
+                
+                while (in.next())
+                {
+                    idsInLog.add(in.id);
+                    sinceCheckpoint.add(in.id);
+                }
+                logLength = in.position;
+            } finally
+            {
+                in.close();
+            }
+            
+            if (logLength < file.length())
+            {
+                final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try { raf.setLength(logLength); }
+                finally { raf.close(); }
+            }
+        }
+        else
+        {
+            index = SortedIdIndex.EMPTY;
+            indexFile.delete();
+        }
+
+        output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file, true), 1 << 16));
+        
+        if (!resuming)
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(matcher.getBaseQuery().toString());
+            output.flush();
+            logLength = output.size();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see edu.ku.brc.sgr.BatchMatchResultAccumulator#addResult(edu.ku.brc.sgr.MatchResults)
+     */
+    @Override
+    synchronized public void addResult(MatchResults result)
+    {
+        try
+        {
+            record.reset();
+            recordOut.writeUTF(result.matchedId);
+            recordOut.writeInt(result.qTime);
+            recordOut.writeFloat(result.maxScore);
+            
+            output.writeInt(record.size());
+            record.writeTo(output);
+            logLength += 4 + record.size();
+            
+            idsInLog.add(result.matchedId);
+            sinceCheckpoint.add(result.matchedId);
+            
+            final long now = System.currentTimeMillis();
+            if (++unflushed >= flushEvery || now - lastFlush >= flushMillis)
+            {
+                flush();
+            }
+            if (sinceCheckpoint.size() >= checkpointEvery)
+            {
+                checkpoint();
+            }
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    synchronized public void flush() throws IOException
+    {
+        output.flush();
+        unflushed = 0;
+        lastFlush = System.currentTimeMillis();
+    }
+    
+    /**
+     * Write the id index covering everything logged so far.
+     */
+    synchronized public void checkpoint() throws IOException
+    {
+        flush();
+        SortedIdIndex.write(indexFile, logLength, index, sinceCheckpoint);
+        index = SortedIdIndex.map(indexFile);
+        idsInLog = new CompletedIdSet();
+        sinceCheckpoint.clear();
+    }
+    
+    synchronized public void close() throws IOException
+    {
+        checkpoint();
+        output.close();
+    }
+
+    /* (non-Javadoc)
+     * @see edu.ku.brc.sgr.BatchMatchResultAccumulator#getCompletedIds()
+     */
+    @Override
+    public CompletedIds getCompletedIds()
+    {
+        return completedIds;
+    }
+
+    @Override
+    public int nCompleted()
+    {
+        return completedIds.size();
+    }
+
+    @Override
+    public SGRMatcher getMatcher()
+    {
+        return matcher;
+    }
+    
+    /**
+     * Convert a result log into the tab separated format written by 
+     * {@link BatchMatchResultsInFile}.
+     */
+    public static void toTsv(File log, File tsv) throws IOException
+    {
+        final LogReader in = new LogReader(log);
+        final PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(tsv)));
+        try
+        {
+            out.println(in.query);
+            while (in.next())
+            {
+                out.println(in.id + "\t" + in.qTime + "\t" + in.maxScore);
+            }
+        } finally
+        {
+            out.close();
+            in.close();
+        }
+    }
+    
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.err.println("usage: BatchMatchResultsLog <log file> <tsv file>");
+            System.exit(1);
+        }
+        toTsv(new File(args[0]), new File(args[1]));
+    }
+    
+    /**
+     * Sequential reader over the records of a log. Stops cleanly at a 
+     * partially written final record, leaving {@link #position} at the end
+     * of the last complete one.
+     */
+    private static class LogReader
+    {
+        final String query;
+        final SolrParams params;
+        long position;
+        
+        String id;
+        int qTime;
+        float maxScore;
+        
+        private final CountingInputStream counter;
+        private final DataInputStream in;
+        private byte[] buffer = new byte[256];
+        
+        LogReader(File file) throws IOException
+        {
+            counter = new CountingInputStream(
+                    new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            in = new DataInputStream(counter);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                in.close();
+                throw new IOException("not a batch match result log: " + file);
+            }
+            query = in.readUTF();
+            params = SolrRequestParsers.parseQueryString(query);
+            position = counter.getCount();
+        }
+        
+        void skipTo(long offset) throws IOException
+        {
+            while (counter.getCount() < offset)
+            {
+                if (in.skip(offset - counter.getCount()) <= 0) throw new EOFException();
+            }
+            position = offset;
+        }
+        
+        boolean next() throws IOException
+        {
+            final int length;
+            try
+            {
+                length = in.readInt();
+                if (length < 0)
+                {
+                    throw new IOException("bad record length " + length + " at " + position);
+                }
+                if (length > buffer.length) buffer = new byte[length];
+                in.readFully(buffer, 0, length);
+            } catch (EOFException e)
+            {
+                return false;
+            }
+            final DataInputStream rec = new DataInputStream(
+                    new ByteArrayInputStream(buffer, 0, length));
+            id = rec.readUTF();
+            qTime = rec.readInt();
+            maxScore = rec.readFloat();
+            position += 4 + length;
+            return true;
+        }
+        
+        void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
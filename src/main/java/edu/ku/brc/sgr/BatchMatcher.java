@@ -18,18 +18,41 @@
 package edu.ku.brc.sgr;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.solr.client.solrj.SolrQuery;
 
-import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 
 /**
  * A BatchMatcher instance handles matching a batch of records against a SOLR
  * index of potentially duplicate records.
  * 
  * Results are spooled into an instance of {@link BatchMatchResults} and can 
- * potentially be resumed. 
+ * potentially be resumed. Items are handed to the worker threads in chunks of
+ * {@link SGRMatcher#batchSize} so that each chunk can be matched with a single
+ * request.
+ * 
+ * In asynchronous mode the worker threads only dispatch requests through
+ * {@link SGRMatcher#matchAsync(List)}, so a few threads can keep up to
+ * {@link SGRMatcher#maxInFlight} requests outstanding. A worker waits before
+ * dispatching while that many chunks are already outstanding.
+ * 
+ * In adaptive mode the number of working threads is adjusted while the batch
+ * runs by a {@link ConcurrencyLimiter} fed with the observed latencies.
+ * 
+ * With {@link #setDeduplicate(boolean)} only one of each group of input
+ * records with the same normalized content is matched and its results are
+ * recorded for every record in the group.
+ * 
+ * Stage latencies, rates and thread utilization are collected in
+ * {@link BatchMatcherMetrics}, published over JMX while {@link #run()} is
+ * running and available through {@link #getMetrics()}.
  * @author ben
  *
  * @code_status Alpha
@@ -41,39 +64,99 @@ import com.google.common.collect.ImmutableSet;
 public class BatchMatcher
 {
     private final SGRMatcher matcher;
+    private final BatchMatchResultAccumulator accumulator;
     public final int nThreads;
+    public final int batchSize;
+    public final boolean async;
+    private final ConcurrencyLimiter limiter;
+    private final BatchMatcherMetrics metrics;
 
-    private final BlockingJobQueue<Matchable> jobs;
+    private final BlockingJobQueue<List<Matchable>> jobs;
     private final Iterable<Matchable> items;
+    private final CompletedIds completedIds;
+    private final boolean resuming;
     
     private boolean used = false;
+    private InputDeduplicator deduplicator = null;
+    private final InputDeduplicator.Delivery delivery = new InputDeduplicator.Delivery()
+    {
+        @Override
+        public void deliver(MatchResults results)
+        {
+            record(results);
+            nItemsFinished.incrementAndGet();
+        }
+
+        @Override
+        public void failed(String id, Throwable cause)
+        {
+            asyncFailure.compareAndSet(null, cause);
+            nItemsFinished.incrementAndGet();
+        }
+    };
+    private final AtomicInteger nItemsQueued = new AtomicInteger();
+    private final AtomicInteger nItemsFinished = new AtomicInteger();
     private final AtomicInteger nItemsSkipped = new AtomicInteger();
+    private final AtomicInteger nChunksInFlight = new AtomicInteger();
+    private final AtomicReference<Throwable> asyncFailure = new AtomicReference<Throwable>();
 
     public BatchMatcher(final Iterator<? extends Matchable> toMatch,
                         final BatchMatchResultAccumulator accumulator, int nThreads)
+    {
+        this(toMatch, accumulator, nThreads, false);
+    }
+
+    public BatchMatcher(final Iterator<? extends Matchable> toMatch,
+                        final BatchMatchResultAccumulator accumulator, int nThreads,
+                        boolean async)
+    {
+        this(toMatch, accumulator, nThreads, async, null);
+    }
+
+    public BatchMatcher(final Iterator<? extends Matchable> toMatch,
+                        final BatchMatchResultAccumulator accumulator, 
+                        ConcurrencyLimiter limiter)
+    {
+        this(toMatch, accumulator, limiter.maxLimit, false, limiter);
+    }
+
+    private BatchMatcher(final Iterator<? extends Matchable> toMatch,
+                         final BatchMatchResultAccumulator accumulator, int nThreads,
+                         boolean async, ConcurrencyLimiter limiter)
     {
         this.matcher = accumulator.getMatcher();
+        this.accumulator = accumulator;
         this.nThreads = nThreads;
+        this.batchSize = matcher.batchSize;
+        this.async = async;
+        this.limiter = limiter;
+        this.metrics = new BatchMatcherMetrics(nThreads);
 
-        final ImmutableSet<String> completedIds = accumulator.getCompletedIds();
-        final boolean resuming = (completedIds.size() > 0); 
+        completedIds = accumulator.getCompletedIds();
+        resuming = (completedIds.size() > 0); 
         
         // Setup work unit for threads.
-        final BlockingJobQueue.Worker<Matchable> worker = 
-            new BlockingJobQueue.Worker<Matchable>() 
+        final BlockingJobQueue.Worker<List<Matchable>> worker = 
+            new BlockingJobQueue.Worker<List<Matchable>>() 
         {
             @Override
-            public void doWork(Matchable toMatch)
+            public void doWork(List<Matchable> chunk)
             {
-                if (resuming && completedIds.contains(toMatch.getId())) {
-                    nItemsSkipped.getAndIncrement();
-                    return;
+                final long start = System.nanoTime();
+                try
+                {
+                    if (BatchMatcher.this.async) dispatch(chunk);
+                    else matchChunk(chunk);
+                } finally
+                {
+                    metrics.busy(System.nanoTime() - start);
                 }
-                accumulator.addResult(matcher.match(toMatch));
             }
         };
         
-        jobs = new BlockingJobQueue<Matchable>(nThreads, worker);
+        jobs = (limiter != null) ? 
+                new BlockingJobQueue<List<Matchable>>(limiter, worker) :
+                new BlockingJobQueue<List<Matchable>>(nThreads, worker);
 
         items = new Iterable<Matchable>()
         {
@@ -82,6 +165,154 @@ public class BatchMatcher
         };
     }
     
+    private List<Matchable> removeCompleted(List<Matchable> chunk)
+    {
+        final List<Matchable> toMatch = Lists.newArrayListWithCapacity(chunk.size());
+        for (Matchable item : chunk)
+        {
+            if (resuming && completedIds.contains(item.getId())) {
+                nItemsSkipped.getAndIncrement();
+            } else {
+                toMatch.add(item);
+            }
+        }
+        return toMatch;
+    }
+    
+    private void matchChunk(List<Matchable> chunk)
+    {
+        final List<Matchable> toMatch = removeCompleted(chunk);
+        try
+        {
+            if (toMatch.isEmpty()) return;
+
+            final long start = System.nanoTime();
+            final List<MatchResults> results = matcher.match(toMatch);
+            final long elapsed = System.nanoTime() - start;
+            
+            int qTime = 0;
+            for (MatchResults result : results) { qTime += result.qTime; }
+            metrics.requestDone(elapsed, qTime);
+            if (limiter != null)
+            {
+                limiter.onSample(qTime, elapsed / 1000000L);
+            }
+            
+            for (MatchResults result : results)
+            {
+                deliver(result);
+            }
+        } catch (RuntimeException e)
+        {
+            failDuplicates(toMatch, e);
+            throw e;
+        } finally
+        {
+            nItemsFinished.addAndGet(chunk.size());
+        }
+    }
+    
+    private void dispatch(final List<Matchable> chunk)
+    {
+        final List<Matchable> toMatch = removeCompleted(chunk);
+        if (toMatch.isEmpty())
+        {
+            nItemsFinished.addAndGet(chunk.size());
+            return;
+        }
+        
+        waitForChunkSlot();
+        final long start = System.nanoTime();
+        Futures.addCallback(matcher.matchAsync(toMatch), 
+                new FutureCallback<ImmutableList<MatchResults>>()
+        {
+            @Override
+            public void onSuccess(ImmutableList<MatchResults> results)
+            {
+                int qTime = 0;
+                for (MatchResults result : results) { qTime += result.qTime; }
+                metrics.requestDone(System.nanoTime() - start, qTime);
+                try
+                {
+                    for (MatchResults result : results)
+                    {
+                        deliver(result);
+                    }
+                } catch (RuntimeException e)
+                {
+                    asyncFailure.compareAndSet(null, e);
+                    failDuplicates(toMatch, e);
+                } finally
+                {
+                    chunkDone(chunk);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+                asyncFailure.compareAndSet(null, t);
+                failDuplicates(toMatch, t);
+                chunkDone(chunk);
+            }
+        });
+    }
+    
+    private void deliver(MatchResults result)
+    {
+        record(result);
+        if (deduplicator != null) deduplicator.completed(result, delivery);
+    }
+    
+    /**
+     * Fail the waiting duplicates of items whose results were not delivered.
+     */
+    private void failDuplicates(List<Matchable> items, Throwable cause)
+    {
+        if (deduplicator == null) return;
+        for (Matchable item : items)
+        {
+            deduplicator.failed(item.getId(), cause, delivery);
+        }
+    }
+    
+    private void record(MatchResults result)
+    {
+        final long start = System.nanoTime();
+        accumulator.addResult(result);
+        metrics.addResult.record(System.nanoTime() - start);
+    }
+    
+    synchronized private void chunkDone(List<Matchable> chunk)
+    {
+        nItemsFinished.addAndGet(chunk.size());
+        nChunksInFlight.decrementAndGet();
+        this.notifyAll();
+    }
+    
+    synchronized private void waitForChunkSlot()
+    {
+        while (nChunksInFlight.get() >= matcher.maxInFlight)
+        {
+            try
+            {
+                this.wait();
+            } catch (InterruptedException e) {}
+        }
+        nChunksInFlight.incrementAndGet();
+    }
+    
+    synchronized private void waitForChunksInFlight()
+    {
+        while (nChunksInFlight.get() > 0)
+        {
+            try
+            {
+                this.wait();
+            } catch (InterruptedException e) {}
+        }
+    }
+    
     public void run()
     {
         if (used)
@@ -90,25 +321,72 @@ public class BatchMatcher
         }
         used = true;
         
+        metrics.register();
+        metrics.start();
+        try
+        {
+            produce();
+        } finally
+        {
+            metrics.end();
+            metrics.unregister();
+        }
+    }
+    
+    private void produce()
+    {
         jobs.startThreads();
         
+        List<Matchable> chunk = Lists.newArrayListWithCapacity(batchSize);
         for (Matchable item: items)
         { 
-            try
-            {
-                jobs.addWork(item);
-            } catch (InterruptedException e)
+            if (deduplicator != null && !(resuming && completedIds.contains(item.getId())))
             {
-                jobs.stopThreads();
-                return;
-            } catch (Exception e)
-            {
-                throw new RuntimeException(e);
+                nItemsQueued.incrementAndGet();
+                if (!deduplicator.admit(item, delivery)) continue;
+                nItemsQueued.decrementAndGet();
             }
+            chunk.add(item);
+            if (chunk.size() < batchSize) continue;
+            if (!queue(chunk)) return;
+            chunk = Lists.newArrayListWithCapacity(batchSize);
         }
+        if (!chunk.isEmpty() && !queue(chunk)) return;
         
         jobs.waitForAllJobsToComplete();
         jobs.stopThreads();
+        waitForChunksInFlight();
+        checkAsyncFailure();
+    }
+    
+    private boolean queue(List<Matchable> chunk)
+    {
+        try
+        {
+            checkAsyncFailure();
+            nItemsQueued.addAndGet(chunk.size());
+            final long start = System.nanoTime();
+            jobs.addWork(chunk);
+            metrics.handoff.record(System.nanoTime() - start);
+            return true;
+        } catch (InterruptedException e)
+        {
+            jobs.stopThreads();
+            return false;
+        } catch (RuntimeException e)
+        {
+            jobs.stopThreads();
+            throw e;
+        } catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    private void checkAsyncFailure()
+    {
+        final Throwable failure = asyncFailure.get();
+        if (failure != null) throw new RuntimeException(failure);
     }
     
     public SolrQuery getBaseQuery()
@@ -118,17 +396,17 @@ public class BatchMatcher
     
     public int getTotalCurrentlyQueued()
     {
-        return jobs.getCurrentJobsQueued();
+        return nItemsQueued.get() - nItemsFinished.get();
     }
     
     public int getTotalQueued()
     {
-        return jobs.getTotalJobsQueued();
+        return nItemsQueued.get();
     }
     
     public int getTotalFinished()
     {
-        return jobs.getTotalJobsFinished();
+        return nItemsFinished.get();
     }
     
     public int getTotalSkipped()
@@ -136,6 +414,47 @@ public class BatchMatcher
         return nItemsSkipped.get();
     }
     
+    /**
+     * Match only one record of each group with the same normalized content.
+     * Must be called before {@link #run()}.
+     */
+    public void setDeduplicate(boolean deduplicate)
+    {
+        if (used) throw new IllegalStateException("BatchMatcher is already running.");
+        deduplicator = deduplicate ? new InputDeduplicator() : null;
+    }
+    
+    /**
+     * @return the number of queries saved by matching duplicate input 
+     * records only once.
+     */
+    public int getTotalDeduplicated()
+    {
+        return (deduplicator != null) ? deduplicator.getTotalSaved() : 0;
+    }
+    
+    public BatchMatcherMetrics getMetrics()
+    {
+        return metrics;
+    }
+    
+    public int getConcurrencyLimit()
+    {
+        return (limiter != null) ? limiter.getLimit() : nThreads;
+    }
+    
+    public long getLatencyTarget()
+    {
+        if (limiter == null) throw new IllegalStateException("BatchMatcher is not adaptive.");
+        return limiter.getLatencyTarget();
+    }
+    
+    public void setLatencyTarget(long latencyTargetMillis)
+    {
+        if (limiter == null) throw new IllegalStateException("BatchMatcher is not adaptive.");
+        limiter.setLatencyTarget(latencyTargetMillis);
+    }
+    
     public static SGRMatcher.Factory getMatcherFactory()
     {
         SGRMatcher.Factory factory = SGRMatcher.getFactory();
@@ -0,0 +1,300 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Latency histograms, rates and thread utilization of a {@link BatchMatcher}
+ * run. The stages measured are:
+ * 
+ * <ul>
+ * <li>handoff: how long the producer blocks handing a chunk to a worker,
+ * which is high when the workers can't keep up.</li>
+ * <li>request: round trip of matching one chunk.</li>
+ * <li>qTime: the part of the request SOLR reports as its own.</li>
+ * <li>client overhead: request minus qTime, i.e. serialization, transport
+ * and response parsing, which SolrJ does inside the request.</li>
+ * <li>addResult: recording one item's results in the accumulator.</li>
+ * </ul>
+ * 
+ * A running batch publishes these under {@link #DOMAIN} on the platform 
+ * MBean server; {@link #snapshot()} gives the same numbers in process.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class BatchMatcherMetrics implements BatchMatcherMetricsMXBean
+{
+    public static final String DOMAIN = "edu.ku.brc.sgr";
+    
+    private static final AtomicInteger nextId = new AtomicInteger();
+    
+    public final LatencyHistogram handoff = new LatencyHistogram();
+    public final LatencyHistogram request = new LatencyHistogram();
+    public final LatencyHistogram qTime = new LatencyHistogram();
+    public final LatencyHistogram clientOverhead = new LatencyHistogram();
+    public final LatencyHistogram addResult = new LatencyHistogram();
+    
+    private final int nThreads;
+    private final ConcurrentMap<String, AtomicLong> threadBusy = 
+        new ConcurrentHashMap<String, AtomicLong>();
+    private final ThreadLocal<AtomicLong> busy = new ThreadLocal<AtomicLong>()
+    {
+        @Override
+        protected AtomicLong initialValue()
+        {
+            final AtomicLong total = new AtomicLong();
+            threadBusy.put(Thread.currentThread().getName(), total);
+            return total;
+        }
+    };
+    
+    private volatile long startNanos = 0;
+    private volatile long endNanos = 0;
+    private ObjectName registeredAs = null;
+    
+    public BatchMatcherMetrics(int nThreads)
+    {
+        this.nThreads = nThreads;
+    }
+    
+    void start()
+    {
+        startNanos = System.nanoTime();
+    }
+    
+    void end()
+    {
+        endNanos = System.nanoTime();
+    }
+    
+    /**
+     * Record the round trip of a request and the sum of the qTimes reported
+     * for the items it matched.
+     */
+    void requestDone(long requestNanos, int qTimeMillis)
+    {
+        final long qTimeNanos = qTimeMillis * 1000000L;
+        request.record(requestNanos);
+        qTime.record(qTimeNanos);
+        clientOverhead.record(requestNanos - qTimeNanos);
+    }
+    
+    /**
+     * Add to the time the calling thread has spent working.
+     */
+    void busy(long nanos)
+    {
+        busy.get().addAndGet(nanos);
+    }
+    
+    synchronized public ObjectName register()
+    {
+        if (registeredAs != null) return registeredAs;
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            final ObjectName name = new ObjectName(
+                    DOMAIN + ":type=BatchMatcher,id=" + nextId.incrementAndGet());
+            server.registerMBean(this, name);
+            registeredAs = name;
+            return name;
+        } catch (JMException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    synchronized public void unregister()
+    {
+        if (registeredAs == null) return;
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+        } catch (JMException e)
+        {
+            throw new RuntimeException(e);
+        } finally
+        {
+            registeredAs = null;
+        }
+    }
+    
+    @Override
+    public long getElapsedMillis()
+    {
+        return elapsedNanos() / 1000000L;
+    }
+    
+    private long elapsedNanos()
+    {
+        if (startNanos == 0) return 0;
+        return ((endNanos != 0) ? endNanos : System.nanoTime()) - startNanos;
+    }
+    
+    @Override
+    public long getItemsRecorded()
+    {
+        return addResult.getCount();
+    }
+    
+    @Override
+    public long getRequests()
+    {
+        return request.getCount();
+    }
+    
+    @Override
+    public double getItemsPerSecond()
+    {
+        return perSecond(getItemsRecorded());
+    }
+    
+    @Override
+    public double getRequestsPerSecond()
+    {
+        return perSecond(getRequests());
+    }
+    
+    private double perSecond(long n)
+    {
+        final long elapsed = elapsedNanos();
+        return (elapsed > 0) ? n * 1e9 / elapsed : 0.0;
+    }
+    
+    @Override
+    public double getUtilization()
+    {
+        final long elapsed = elapsedNanos();
+        if (elapsed == 0) return 0.0;
+        long total = 0;
+        for (AtomicLong t : threadBusy.values()) total += t.get();
+        return (double) total / ((double) elapsed * nThreads);
+    }
+    
+    @Override
+    public Map<String, Long> getThreadBusyMillis()
+    {
+        final ImmutableMap.Builder<String, Long> b = ImmutableMap.builder();
+        for (Map.Entry<String, AtomicLong> e : threadBusy.entrySet())
+        {
+            b.put(e.getKey(), e.getValue().get() / 1000000L);
+        }
+        return b.build();
+    }
+    
+    @Override
+    public Map<String, Double> getHandoffLatency()
+    {
+        return handoff.snapshot().toMillis();
+    }
+    
+    @Override
+    public Map<String, Double> getRequestLatency()
+    {
+        return request.snapshot().toMillis();
+    }
+    
+    @Override
+    public Map<String, Double> getQTime()
+    {
+        return qTime.snapshot().toMillis();
+    }
+    
+    @Override
+    public Map<String, Double> getClientOverhead()
+    {
+        return clientOverhead.snapshot().toMillis();
+    }
+    
+    @Override
+    public Map<String, Double> getAddResultLatency()
+    {
+        return addResult.snapshot().toMillis();
+    }
+    
+    public Snapshot snapshot()
+    {
+        return new Snapshot(this);
+    }
+    
+    /**
+     * The metrics of a batch at one point in time.
+     */
+    public static class Snapshot
+    {
+        public final long elapsedMillis;
+        public final long itemsRecorded;
+        public final long requests;
+        public final double itemsPerSecond;
+        public final double requestsPerSecond;
+        public final double utilization;
+        public final ImmutableMap<String, Long> threadBusyMillis;
+        public final LatencyHistogram.Snapshot handoff;
+        public final LatencyHistogram.Snapshot request;
+        public final LatencyHistogram.Snapshot qTime;
+        public final LatencyHistogram.Snapshot clientOverhead;
+        public final LatencyHistogram.Snapshot addResult;
+        
+        private Snapshot(BatchMatcherMetrics m)
+        {
+            elapsedMillis = m.getElapsedMillis();
+            itemsRecorded = m.getItemsRecorded();
+            requests = m.getRequests();
+            itemsPerSecond = m.getItemsPerSecond();
+            requestsPerSecond = m.getRequestsPerSecond();
+            utilization = m.getUtilization();
+            threadBusyMillis = (ImmutableMap<String, Long>) m.getThreadBusyMillis();
+            handoff = m.handoff.snapshot();
+            request = m.request.snapshot();
+            qTime = m.qTime.snapshot();
+            clientOverhead = m.clientOverhead.snapshot();
+            addResult = m.addResult.snapshot();
+        }
+        
+        @Override
+        public String toString()
+        {
+            return String.format(
+                    "elapsed=%dms items=%d (%.1f/s) requests=%d (%.1f/s) utilization=%.0f%%%n" +
+                    "  handoff:         %s%n" +
+                    "  request:         %s%n" +
+                    "  qTime:           %s%n" +
+                    "  client overhead: %s%n" +
+                    "  addResult:       %s",
+                    elapsedMillis, itemsRecorded, itemsPerSecond, requests, requestsPerSecond,
+                    100 * utilization, handoff, request, qTime, clientOverhead, addResult);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link BatchMatcherMetrics}. Latencies are maps
+ * of count, mean, p50, p90, p99, p999 and max in milliseconds.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public interface BatchMatcherMetricsMXBean
+{
+    long getElapsedMillis();
+    
+    long getItemsRecorded();
+    
+    long getRequests();
+    
+    double getItemsPerSecond();
+    
+    double getRequestsPerSecond();
+    
+    /**
+     * @return the fraction of the worker threads' time spent working.
+     */
+    double getUtilization();
+    
+    Map<String, Long> getThreadBusyMillis();
+    
+    /**
+     * @return time the producer waited to hand a chunk to a worker.
+     */
+    Map<String, Double> getHandoffLatency();
+    
+    /**
+     * @return round trip time of match requests.
+     */
+    Map<String, Double> getRequestLatency();
+    
+    /**
+     * @return time SOLR reported spending on match requests.
+     */
+    Map<String, Double> getQTime();
+    
+    /**
+     * @return round trip time not accounted for by qTime: serialization,
+     * transport and response parsing.
+     */
+    Map<String, Double> getClientOverhead();
+    
+    /**
+     * @return time spent recording results in the accumulator.
+     */
+    Map<String, Double> getAddResultLatency();
+}
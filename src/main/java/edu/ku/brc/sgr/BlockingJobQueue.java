@@ -40,6 +40,7 @@ public class BlockingJobQueue<T>
     private final Worker<T> worker;
     private final List<Thread> threads;
     private final ExceptionHandler<T> exceptionHandler;
+    private final ConcurrencyLimiter limiter;
     
     private Exception abortException = null;
     
@@ -68,9 +69,34 @@ public class BlockingJobQueue<T>
     
     public BlockingJobQueue(final int nThreads, final Worker<T> processWork,
                             final ExceptionHandler<T> exceptionHandler)
+    {
+        this(nThreads, processWork, exceptionHandler, null);
+    }
+    
+    /**
+     * Create a queue whose number of concurrently working threads is 
+     * governed by <code>limiter</code>. {@link ConcurrencyLimiter#maxLimit}
+     * threads are started but only as many as the current limit take work.
+     */
+    public BlockingJobQueue(final ConcurrencyLimiter limiter, final Worker<T> processWork)
+    {
+        this(limiter.maxLimit, processWork, new ExceptionHandler<T>()
+        {
+            @Override
+            public Exception handle(T work, Exception e)
+            {
+                return e;
+            }
+        }, limiter);
+    }
+    
+    private BlockingJobQueue(final int nThreads, final Worker<T> processWork,
+                             final ExceptionHandler<T> exceptionHandler,
+                             final ConcurrencyLimiter limiter)
     {
         this.worker = processWork;
         this.exceptionHandler = exceptionHandler;
+        this.limiter = limiter;
         
         threads = new ArrayList<Thread>(nThreads);
         for (int i = 0; i < nThreads; i++)
@@ -147,13 +173,20 @@ public class BlockingJobQueue<T>
         {
             try
             {
-                T work = workQueue.take();
-                try { worker.doWork(work); }
-                catch (Exception e)
+                if (limiter != null) limiter.acquire();
+                try
+                {
+                    T work = workQueue.take();
+                    try { worker.doWork(work); }
+                    catch (Exception e)
+                    {
+                        abortException = exceptionHandler.handle(work, e);
+                    }
+                    finishedJob();
+                } finally
                 {
-                    abortException = exceptionHandler.handle(work, e);
+                    if (limiter != null) limiter.release();
                 }
-                finishedJob();
             } catch (InterruptedException e)
             {
                 // TODO: Should the work be requeued?
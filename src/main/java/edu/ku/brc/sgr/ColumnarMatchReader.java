@@ -0,0 +1,253 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.servlet.SolrRequestParsers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Reads the files written by {@link BatchMatchResultsColumnar}. Matches are
+ * passed to a {@link Visitor} as plain ids and primitive scores; only the
+ * columns needed to apply the score threshold are decoded for matches that 
+ * do not pass it. A partially written final block is ignored.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ColumnarMatchReader
+{
+    public interface Visitor
+    {
+        /**
+         * @param contributions the score contribution of each field, indexed
+         * like {@link ColumnarMatchReader#getFieldNames()}. The array is 
+         * reused between calls.
+         */
+        void visit(String matchedId, int qTime, float maxScore, 
+                   String matchId, float score, float[] contributions);
+    }
+    
+    private final DataInputStream in;
+    private final String query;
+    private final List<String> fieldNames = Lists.newArrayList();
+    private long position;
+    
+    public ColumnarMatchReader(File file) throws IOException
+    {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        if (in.readInt() != BatchMatchResultsColumnar.MAGIC 
+                || in.readInt() != BatchMatchResultsColumnar.VERSION)
+        {
+            in.close();
+            throw new IOException("not a columnar match file: " + file);
+        }
+        query = in.readUTF();
+        position = 8 + 2 + modifiedUtf8Length(query);
+    }
+    
+    public String getQuery()
+    {
+        return query;
+    }
+    
+    public SolrParams getParams()
+    {
+        return SolrRequestParsers.parseQueryString(query);
+    }
+    
+    /**
+     * @return the fields seen in the blocks read so far.
+     */
+    public ImmutableList<String> getFieldNames()
+    {
+        return ImmutableList.copyOf(fieldNames);
+    }
+    
+    /**
+     * Visit every match scoring at least <code>minScore</code> in the 
+     * remainder of the file.
+     */
+    public void scan(float minScore, Visitor visitor) throws IOException
+    {
+        Block block;
+        while ((block = nextBlock()) != null)
+        {
+            final float[] contributions = new float[fieldNames.size()];
+            int m = 0;
+            for (int r = 0; r < block.nRows; r++)
+            {
+                final int n = block.nMatches(r);
+                for (int i = 0; i < n; i++, m++)
+                {
+                    final float score = block.score(m);
+                    if (score < minScore) continue;
+                    
+                    for (int f = 0; f < contributions.length; f++)
+                    {
+                        contributions[f] = block.contribution(f, m);
+                    }
+                    visitor.visit(block.id(block.rowId(r)), block.qTime(r), block.maxScore(r), 
+                                  block.id(block.matchId(m)), score, contributions);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Add the ids of all results in the remainder of the file to 
+     * <code>ids</code>.
+     * 
+     * @return the length of the file up to the end of the last complete block. 
+     */
+    long readCompletedIds(CompletedIdSet ids) throws IOException
+    {
+        Block block;
+        while ((block = nextBlock()) != null)
+        {
+            for (int r = 0; r < block.nRows; r++) { ids.add(block.id(block.rowId(r))); }
+        }
+        return position;
+    }
+    
+    public void close() throws IOException
+    {
+        in.close();
+    }
+    
+    private Block nextBlock() throws IOException
+    {
+        final byte[] bytes;
+        try
+        {
+            final int length = in.readInt();
+            bytes = new byte[length];
+            in.readFully(bytes);
+        } catch (EOFException e)
+        {
+            return null;
+        }
+        position += 4 + bytes.length;
+        return new Block(bytes);
+    }
+    
+    private static int modifiedUtf8Length(String s)
+    {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++)
+        {
+            final char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007f) length += 1;
+            else if (c > 0x07ff) length += 3;
+            else length += 2;
+        }
+        return length;
+    }
+    
+    /**
+     * One block of columns. Ids are decoded from the block dictionary only 
+     * when asked for.
+     */
+    private class Block
+    {
+        final int nRows;
+        final int nTotal;
+        
+        private final ByteBuffer buffer;
+        private final byte[] bytes;
+        private final int[] idOffsets;
+        private final String[] idCache;
+        private final int rowIds, qTimes, maxScores, nMatches, matchIds, scores, contributions;
+        
+        Block(byte[] bytes) throws IOException
+        {
+            this.bytes = bytes;
+            buffer = ByteBuffer.wrap(bytes);
+            nRows = buffer.getInt(0);
+            nTotal = buffer.getInt(4);
+            
+            int pos = 8;
+            final int nIds = buffer.getInt(pos);
+            pos += 4;
+            idOffsets = new int[nIds];
+            idCache = new String[nIds];
+            for (int i = 0; i < nIds; i++)
+            {
+                idOffsets[i] = pos;
+                pos += 2 + (buffer.getShort(pos) & 0xffff);
+            }
+            
+            final int nNewFields = buffer.getInt(pos);
+            pos += 4;
+            for (int i = 0; i < nNewFields; i++)
+            {
+                fieldNames.add(utf(pos));
+                pos += 2 + (buffer.getShort(pos) & 0xffff);
+            }
+            
+            rowIds = pos;
+            qTimes = rowIds + 4 * nRows;
+            maxScores = qTimes + 4 * nRows;
+            nMatches = maxScores + 4 * nRows;
+            matchIds = nMatches + 4 * nRows;
+            scores = matchIds + 4 * nTotal;
+            contributions = scores + 4 * nTotal;
+        }
+        
+        String id(int code) throws IOException
+        {
+            if (idCache[code] == null) idCache[code] = utf(idOffsets[code]);
+            return idCache[code];
+        }
+        
+        private String utf(int offset) throws IOException
+        {
+            final DataInputStream s = new DataInputStream(
+                    new ByteArrayInputStream(bytes, offset, bytes.length - offset));
+            return s.readUTF();
+        }
+        
+        int rowId(int r) { return buffer.getInt(rowIds + 4 * r); }
+        int qTime(int r) { return buffer.getInt(qTimes + 4 * r); }
+        float maxScore(int r) { return buffer.getFloat(maxScores + 4 * r); }
+        int nMatches(int r) { return buffer.getInt(nMatches + 4 * r); }
+        int matchId(int m) { return buffer.getInt(matchIds + 4 * m); }
+        float score(int m) { return buffer.getFloat(scores + 4 * m); }
+        
+        float contribution(int field, int m) 
+        {
+            return buffer.getFloat(contributions + 4 * (field * nTotal + m));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.collect.Sets;
+
+/**
+ * A growable {@link CompletedIds}. Ids that are plain non-negative numbers,
+ * which is the common case for database keys, are kept unboxed in an open
+ * addressing hash table of longs. Any other id is kept in an ordinary set.
+ * 
+ * Adding is synchronized, but {@link #contains(String)} takes no lock, as it
+ * is on the path of every item of a batch: slots are written with volatile
+ * stores and a grown table is published whole, so a reader sees every id
+ * added before it started.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class CompletedIdSet implements CompletedIds
+{
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MAX_DIGITS = 18;
+    
+    private volatile AtomicLongArray table;
+    private volatile int nNumeric = 0;
+    private final Set<String> others = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
+    public CompletedIdSet()
+    {
+        this(1024);
+    }
+    
+    public CompletedIdSet(int expectedSize)
+    {
+        table = newTable(Math.max(16, Integer.highestOneBit(Math.max(1, expectedSize)) << 2));
+    }
+    
+    synchronized public void add(String id)
+    {
+        final long n = asNumber(id);
+        if (n == EMPTY) 
+        {
+            others.add(id);
+            return;
+        }
+        if (insert(table, n)) 
+        {
+            nNumeric++;
+            if (nNumeric * 2 > table.length()) rehash();
+        }
+    }
+
+    @Override
+    public boolean contains(String id)
+    {
+        final long n = asNumber(id);
+        if (n == EMPTY) return others.contains(id);
+        
+        final AtomicLongArray table = this.table;
+        final int mask = table.length() - 1;
+        for (int i = slot(n, mask); ; i = (i + 1) & mask)
+        {
+            final long entry = table.get(i);
+            if (entry == n) return true;
+            if (entry == EMPTY) return false;
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return nNumeric + others.size();
+    }
+    
+    private void rehash()
+    {
+        final AtomicLongArray bigger = newTable(table.length() * 2);
+        for (int i = 0; i < table.length(); i++)
+        {
+            final long n = table.get(i);
+            if (n != EMPTY) insert(bigger, n);
+        }
+        table = bigger;
+    }
+    
+    private static boolean insert(AtomicLongArray table, long n)
+    {
+        final int mask = table.length() - 1;
+        for (int i = slot(n, mask); ; i = (i + 1) & mask)
+        {
+            final long entry = table.get(i);
+            if (entry == n) return false;
+            if (entry == EMPTY) 
+            {
+                table.set(i, n);
+                return true;
+            }
+        }
+    }
+    
+    private static AtomicLongArray newTable(int size)
+    {
+        final AtomicLongArray table = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) table.set(i, EMPTY);
+        return table;
+    }
+    
+    private static int slot(long n, int mask)
+    {
+        long h = n * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+    
+    /**
+     * @return the value of a canonical decimal id, or EMPTY if the id has to
+     * be kept as a string. Ids with leading zeros are not canonical since 
+     * they would collide with the id without them.
+     */
+    private static long asNumber(String id)
+    {
+        final int len = id.length();
+        if (len == 0 || len > MAX_DIGITS) return EMPTY;
+        if (len > 1 && id.charAt(0) == '0') return EMPTY;
+        
+        long n = 0;
+        for (int i = 0; i < len; i++)
+        {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') return EMPTY;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+}
@@ -0,0 +1,131 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ *
+ */
+package edu.ku.brc.sgr;
+
+/**
+ * An additive increase / multiplicative decrease limit on the number of
+ * concurrently running jobs.
+ *
+ * Every completed request reports its end-to-end latency and the server's
+ * qTime. The limit grows by one after a full window of requests within the
+ * latency target and shrinks by {@link #backoffRatio} as soon as a request
+ * misses the target, or its qTime rises well above the lowest qTime seen
+ * recently, which means requests are queuing inside SOLR.
+ *
+ * The requests already running when the limit shrinks were started under
+ * the old limit, so their slow responses say nothing about the new one: the
+ * limit shrinks at most once per window of as many samples as there were
+ * requests allowed before the decrease.
+ *
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ConcurrencyLimiter
+{
+    public final int minLimit;
+    public final int maxLimit;
+    public final double backoffRatio = 0.9;
+    public final double qTimeTolerance = 2.0;
+
+    private volatile long latencyTargetMillis;
+
+    private double limit;
+    private int inUse = 0;
+    private int withinTarget = 0;
+    private int untilNextDecrease = 0;
+    private double baselineQTime = Double.MAX_VALUE;
+
+    public ConcurrencyLimiter(int minLimit, int maxLimit, long latencyTargetMillis)
+    {
+        if (minLimit < 1 || maxLimit < minLimit)
+        {
+            throw new IllegalArgumentException("invalid limits: " + minLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetMillis = latencyTargetMillis;
+        this.limit = minLimit;
+    }
+
+    synchronized public void acquire() throws InterruptedException
+    {
+        while (inUse >= getLimit())
+        {
+            this.wait();
+        }
+        inUse++;
+    }
+
+    synchronized public void release()
+    {
+        inUse--;
+        this.notifyAll();
+    }
+
+    synchronized public void onSample(int qTimeMillis, long latencyMillis)
+    {
+        // Let the baseline drift up slowly so that it follows a SOLR
+        // instance whose unloaded response time changes over the run.
+        baselineQTime = Math.min(baselineQTime * 1.01, Math.max(1, qTimeMillis));
+
+        final boolean overloaded = latencyMillis > latencyTargetMillis
+            || qTimeMillis > qTimeTolerance * baselineQTime;
+
+        if (untilNextDecrease > 0) untilNextDecrease--;
+
+        if (overloaded)
+        {
+            if (untilNextDecrease == 0)
+            {
+                untilNextDecrease = getLimit();
+                limit = Math.max(minLimit, limit * backoffRatio);
+            }
+            withinTarget = 0;
+        }
+        else if (++withinTarget >= getLimit())
+        {
+            limit = Math.min(maxLimit, limit + 1);
+            withinTarget = 0;
+            this.notifyAll();
+        }
+    }
+
+    synchronized public int getLimit()
+    {
+        return (int) limit;
+    }
+
+    synchronized public int getInUse()
+    {
+        return inUse;
+    }
+
+    public long getLatencyTarget()
+    {
+        return latencyTargetMillis;
+    }
+
+    public void setLatencyTarget(long latencyTargetMillis)
+    {
+        this.latencyTargetMillis = latencyTargetMillis;
+    }
+}
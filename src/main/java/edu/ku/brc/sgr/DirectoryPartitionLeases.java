@@ -0,0 +1,259 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Partition leases kept as files in a directory shared by the workers, for
+ * runs without a database. Each partition has a lease file holding its 
+ * owner and expiry time and, once finished, a done file. Changes to a lease
+ * are made while holding the partition's lock file, which is created
+ * atomically and held only for the few milliseconds of the change.
+ * 
+ * Expiry times are compared with each worker's clock, so the clocks of the
+ * machines involved should agree to well within the lease duration.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class DirectoryPartitionLeases implements PartitionLeases
+{
+    // A lock older than this was left by a worker that died holding it.
+    private static final long STALE_LOCK_MILLIS = 30000;
+    
+    public final File directory;
+    private final int nPartitions;
+    
+    public DirectoryPartitionLeases(File directory, int nPartitions)
+    {
+        if (nPartitions < 1) throw new IllegalArgumentException("invalid nPartitions: " + nPartitions);
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new RuntimeException("could not create lease directory: " + directory);
+        }
+        this.directory = directory;
+        this.nPartitions = nPartitions;
+    }
+    
+    @Override
+    public int nPartitions()
+    {
+        return nPartitions;
+    }
+    
+    @Override
+    public int claim(String owner, long leaseMillis)
+    {
+        for (int p = 0; p < nPartitions; p++)
+        {
+            if (doneFile(p).exists()) continue;
+            if (!lock(p)) continue;
+            try
+            {
+                if (doneFile(p).exists()) continue;
+                final Lease lease = readLease(p);
+                if (lease == null || lease.expires < System.currentTimeMillis())
+                {
+                    writeLease(p, owner, System.currentTimeMillis() + leaseMillis);
+                    return p;
+                }
+            } finally
+            {
+                unlock(p);
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public boolean renew(int partition, String owner, long leaseMillis)
+    {
+        lockWaiting(partition);
+        try
+        {
+            if (!holds(partition, owner)) return false;
+            writeLease(partition, owner, System.currentTimeMillis() + leaseMillis);
+            return true;
+        } finally
+        {
+            unlock(partition);
+        }
+    }
+    
+    @Override
+    public void complete(int partition, String owner)
+    {
+        lockWaiting(partition);
+        try
+        {
+            if (!holds(partition, owner))
+            {
+                throw new IllegalStateException("partition " + partition + " is not leased to " + owner);
+            }
+            Files.write(owner, doneFile(partition), Charsets.UTF_8);
+            leaseFile(partition).delete();
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        } finally
+        {
+            unlock(partition);
+        }
+    }
+    
+    @Override
+    public void release(int partition, String owner)
+    {
+        lockWaiting(partition);
+        try
+        {
+            if (holds(partition, owner)) leaseFile(partition).delete();
+        } finally
+        {
+            unlock(partition);
+        }
+    }
+    
+    @Override
+    public boolean allComplete()
+    {
+        for (int p = 0; p < nPartitions; p++)
+        {
+            if (!doneFile(p).exists()) return false;
+        }
+        return true;
+    }
+    
+    private boolean holds(int partition, String owner)
+    {
+        final Lease lease = readLease(partition);
+        return lease != null && lease.owner.equals(owner) 
+            && lease.expires >= System.currentTimeMillis();
+    }
+    
+    private static class Lease
+    {
+        final String owner;
+        final long expires;
+        
+        Lease(String owner, long expires)
+        {
+            this.owner = owner;
+            this.expires = expires;
+        }
+    }
+    
+    private Lease readLease(int partition)
+    {
+        final File f = leaseFile(partition);
+        if (!f.exists()) return null;
+        try
+        {
+            final String content = Files.toString(f, Charsets.UTF_8);
+            final int tab = content.lastIndexOf('\t');
+            if (tab < 0) return null;
+            return new Lease(content.substring(0, tab), 
+                             Long.parseLong(content.substring(tab + 1).trim()));
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        } catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+    
+    private void writeLease(int partition, String owner, long expires)
+    {
+        final File tmp = new File(directory, "partition-" + partition + ".lease.tmp");
+        try
+        {
+            Files.write(owner + "\t" + expires + "\n", tmp, Charsets.UTF_8);
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        final File f = leaseFile(partition);
+        if (!tmp.renameTo(f))
+        {
+            f.delete();
+            if (!tmp.renameTo(f)) throw new RuntimeException("could not write lease: " + f);
+        }
+    }
+    
+    private boolean lock(int partition)
+    {
+        final File lock = lockFile(partition);
+        try
+        {
+            if (lock.createNewFile()) return true;
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        final long modified = lock.lastModified();
+        if (modified != 0 && System.currentTimeMillis() - modified > STALE_LOCK_MILLIS)
+        {
+            lock.delete();
+        }
+        return false;
+    }
+    
+    private void lockWaiting(int partition)
+    {
+        while (!lock(partition))
+        {
+            try
+            {
+                Thread.sleep(10);
+            } catch (InterruptedException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+    
+    private void unlock(int partition)
+    {
+        lockFile(partition).delete();
+    }
+    
+    private File lockFile(int partition)
+    {
+        return new File(directory, "partition-" + partition + ".lock");
+    }
+    
+    private File leaseFile(int partition)
+    {
+        return new File(directory, "partition-" + partition + ".lease");
+    }
+    
+    private File doneFile(int partition)
+    {
+        return new File(directory, "partition-" + partition + ".done");
+    }
+}
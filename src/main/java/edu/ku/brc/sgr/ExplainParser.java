@@ -0,0 +1,217 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.List;
+
+import org.apache.solr.common.util.NamedList;
+
+/**
+ * Extracts the score contribution of each field from a SOLR explanation,
+ * either the plain text form or the structured form returned when 
+ * <code>debug.explain.structured=true</code>. Contributions are summed into 
+ * an array indexed by {@link FieldDictionary} code.
+ * 
+ * The text parser makes a single pass over the explanation looking for
+ * lines of the form <code>1.234 = (MATCH) weight(field:term ...</code> and 
+ * does not allocate anything beyond the result array.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ExplainParser
+{
+    private static final String MARKER = " = (MATCH) weight(";
+    private static final String WEIGHT = "weight(";
+    
+    private final FieldDictionary fields;
+    
+    public ExplainParser(FieldDictionary fields)
+    {
+        this.fields = fields;
+    }
+    
+    public float[] parse(String explained)
+    {
+        float[] contributions = new float[fields.size()];
+        int from = 0;
+        while (true)
+        {
+            final int at = explained.indexOf(MARKER, from);
+            if (at < 0) break;
+            from = at + MARKER.length();
+            
+            final int fieldEnd = explained.indexOf(':', from);
+            if (fieldEnd < 0) break;
+            if (fieldEnd == from || fieldEnd + 1 >= explained.length() 
+                    || Character.isWhitespace(explained.charAt(fieldEnd + 1))) continue;
+            
+            int valueStart = at;
+            while (valueStart > 0 && !Character.isWhitespace(explained.charAt(valueStart - 1))) 
+            {
+                valueStart--;
+            }
+            if (valueStart == at) continue;
+            
+            final int code = fieldCode(explained, from, fieldEnd);
+            if (code >= contributions.length) contributions = grow(contributions);
+            contributions[code] += parseFloat(explained, valueStart, at);
+        }
+        return contributions;
+    }
+    
+    /**
+     * Parse a structured explanation: a tree of NamedLists with 
+     * <code>match</code>, <code>value</code>, <code>description</code> and
+     * <code>details</code> entries.
+     */
+    public float[] parse(NamedList<?> explanation)
+    {
+        final float[] contributions = new float[fields.size()];
+        return collect(explanation, contributions);
+    }
+    
+    private float[] collect(NamedList<?> node, float[] contributions)
+    {
+        if (Boolean.FALSE.equals(node.get("match"))) return contributions;
+        
+        final Object description = node.get("description");
+        if (description instanceof String && ((String) description).startsWith(WEIGHT))
+        {
+            final String d = (String) description;
+            final int fieldEnd = d.indexOf(':');
+            final Object value = node.get("value");
+            if (fieldEnd > WEIGHT.length() && value instanceof Number)
+            {
+                final int code = fieldCode(d, WEIGHT.length(), fieldEnd);
+                if (code >= contributions.length) contributions = grow(contributions);
+                contributions[code] += ((Number) value).floatValue();
+            }
+            return contributions;
+        }
+        
+        final Object details = node.get("details");
+        if (details instanceof List<?>)
+        {
+            for (Object child : (List<?>) details)
+            {
+                if (child instanceof NamedList<?>) 
+                {
+                    contributions = collect((NamedList<?>) child, contributions);
+                }
+            }
+        }
+        return contributions;
+    }
+    
+    private float[] grow(float[] contributions)
+    {
+        final float[] grown = new float[fields.size()];
+        System.arraycopy(contributions, 0, grown, 0, contributions.length);
+        return grown;
+    }
+    
+    /**
+     * Look the field up without creating a substring unless it is new.
+     */
+    private int fieldCode(String s, int start, int end)
+    {
+        for (int code = fields.size() - 1; code >= 0; code--)
+        {
+            final String name = fields.nameOf(code);
+            if (name.length() == end - start && s.regionMatches(start, name, 0, name.length()))
+            {
+                return code;
+            }
+        }
+        return fields.codeOf(s.substring(start, end));
+    }
+    
+    /**
+     * Parse the decimal number in <code>s[start, end)</code> as written by
+     * Float.toString. Falls back to Float.parseFloat for anything else.
+     */
+    static float parseFloat(String s, int start, int end)
+    {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+'))
+        {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < end; i++)
+        {
+            final char c = s.charAt(i);
+            if (c >= '0' && c <= '9')
+            {
+                if (digits < 18)
+                {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    if (point) scale--;
+                }
+                else if (!point) scale++;
+            }
+            else if (c == '.' && !point) point = true;
+            else break;
+        }
+        
+        if (i < end && (s.charAt(i) == 'E' || s.charAt(i) == 'e'))
+        {
+            i++;
+            boolean negativeExp = false;
+            if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+'))
+            {
+                negativeExp = s.charAt(i) == '-';
+                i++;
+            }
+            int exp = 0;
+            for (; i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++)
+            {
+                exp = exp * 10 + (s.charAt(i) - '0');
+            }
+            scale += negativeExp ? -exp : exp;
+        }
+        
+        if (i != end || Math.abs(scale) > 22)
+        {
+            return Float.parseFloat(s.substring(start, end));
+        }
+        
+        final double value = (scale < 0) ? mantissa / POWERS_OF_TEN[-scale] 
+                                         : mantissa * POWERS_OF_TEN[scale];
+        return (float) (negative ? -value : value);
+    }
+    
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static
+    {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+}
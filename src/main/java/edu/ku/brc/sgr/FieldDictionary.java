@@ -0,0 +1,81 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns small, stable integer codes to field names so that per field data
+ * can be kept in arrays instead of maps. Codes are never reused and the 
+ * dictionary only grows, which is fine for the handful of fields in an 
+ * index schema.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class FieldDictionary
+{
+    public static final FieldDictionary SHARED = new FieldDictionary();
+    
+    private final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<String, Integer>();
+    private volatile String[] names = new String[0];
+    
+    public int codeOf(String field)
+    {
+        final Integer code = codes.get(field);
+        return (code != null) ? code : add(field);
+    }
+    
+    /**
+     * @return the code of <code>field</code> or -1 if it has none yet.
+     */
+    public int existingCodeOf(String field)
+    {
+        final Integer code = codes.get(field);
+        return (code != null) ? code : -1;
+    }
+    
+    public String nameOf(int code)
+    {
+        return names[code];
+    }
+    
+    public int size()
+    {
+        return names.length;
+    }
+    
+    synchronized private int add(String field)
+    {
+        final Integer existing = codes.get(field);
+        if (existing != null) return existing;
+        
+        final int code = names.length;
+        final String[] grown = new String[code + 1];
+        System.arraycopy(names, 0, grown, 0, code);
+        grown[code] = field.intern();
+        names = grown;
+        codes.put(grown[code], code);
+        return code;
+    }
+}
@@ -0,0 +1,180 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.solr.common.params.SolrParams;
+
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * SHA-1 fingerprints of queries and record content, used as cache and 
+ * lookup keys. Every string is length prefixed before hashing so that 
+ * different sequences of strings can never produce the same input.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class Fingerprints
+{
+    /**
+     * Fingerprint of a set of parameters that does not depend on the order
+     * the parameters were set in. Two parameter sets have the same 
+     * fingerprint exactly when {@link EquateSolrParams#equals} holds.
+     */
+    public static String of(SolrParams params)
+    {
+        final MessageDigest digest = sha1();
+        final ImmutableSortedSet<String> names = 
+            ImmutableSortedSet.copyOf(params.getParameterNamesIterator());
+        for (String name : names)
+        {
+            update(digest, name);
+            final String[] values = params.getParams(name);
+            update(digest, values.length);
+            for (String value : values) { update(digest, value); }
+        }
+        return hex(digest.digest());
+    }
+    
+    /**
+     * Fingerprint of a single string, such as a server location.
+     */
+    public static String of(String s)
+    {
+        final MessageDigest digest = sha1();
+        update(digest, s);
+        return hex(digest.digest());
+    }
+    
+    /**
+     * Fingerprint of a record's content, ignoring its id. With 
+     * <code>normalize</code> set, values are compared case insensitively 
+     * with surrounding whitespace removed and inner runs of whitespace 
+     * collapsed, and the order of values within a field is ignored.
+     */
+    public static String of(SGRRecord record, boolean normalize)
+    {
+        final MessageDigest digest = sha1();
+        final String[] fields = new String[record.nFields()];
+        for (int f = 0; f < fields.length; f++) { fields[f] = record.fieldName(f); }
+        Arrays.sort(fields);
+        for (String field : fields)
+        {
+            update(digest, field);
+            final int f = record.fieldIndex(field);
+            final String[] values = new String[record.nValues(f)];
+            for (int i = 0; i < values.length; i++) { values[i] = record.value(f, i); }
+            if (normalize)
+            {
+                for (int i = 0; i < values.length; i++) { values[i] = normalize(values[i]); }
+                Arrays.sort(values);
+            }
+            update(digest, values.length);
+            for (String value : values) { update(digest, value); }
+        }
+        return hex(digest.digest());
+    }
+    
+    /**
+     * @return a content fingerprint for the kinds of {@link Matchable} whose
+     * results depend only on their content, or null for any other kind.
+     */
+    public static String of(Matchable matchable, boolean normalize)
+    {
+        if (matchable instanceof MatchableRecord)
+        {
+            return "record:" + of(((MatchableRecord) matchable).record, normalize);
+        }
+        if (matchable instanceof MatchableIndexedId)
+        {
+            return "indexed:" + matchable.getId();
+        }
+        return null;
+    }
+    
+    static String normalize(String value)
+    {
+        final StringBuilder sb = new StringBuilder(value.length());
+        boolean space = false;
+        for (int i = 0; i < value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            if (Character.isWhitespace(c))
+            {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) sb.append(' ');
+            space = false;
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+    
+    private static MessageDigest sha1()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    private static void update(MessageDigest digest, int n)
+    {
+        digest.update((byte) (n >>> 24));
+        digest.update((byte) (n >>> 16));
+        digest.update((byte) (n >>> 8));
+        digest.update((byte) n);
+    }
+    
+    private static void update(MessageDigest digest, String s)
+    {
+        try
+        {
+            final byte[] bytes = s.getBytes("UTF-8");
+            update(digest, bytes.length);
+            digest.update(bytes);
+        } catch (UnsupportedEncodingException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    private static String hex(byte[] bytes)
+    {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,173 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Groups the items of a batch by their normalized content so that only the
+ * first item of each group is matched. The results of that representative
+ * are handed out to every other member of the group, either immediately if
+ * they are already known or when they arrive.
+ * 
+ * A group is dropped once its waiting members have been given its results;
+ * only the results of the {@link #maxRecent} most recently used groups are
+ * kept for members that arrive later, so memory does not grow with the 
+ * batch. A later member of a forgotten group is simply matched again. If a
+ * representative fails, its waiting members are failed with it and the 
+ * group is forgotten.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+class InputDeduplicator
+{
+    interface Delivery
+    {
+        void deliver(MatchResults results);
+        void failed(String id, Throwable cause);
+    }
+    
+    private static class Group
+    {
+        final String key;
+        List<String> waiting = Lists.newArrayList();
+        
+        Group(String key)
+        {
+            this.key = key;
+        }
+    }
+    
+    public final int maxRecent;
+    
+    private final Map<String, Group> pending = Maps.newHashMap();
+    private final Map<String, Group> byRepresentative = Maps.newHashMap();
+    private final LinkedHashMap<String, MatchResults> recent;
+    private final AtomicInteger nSaved = new AtomicInteger();
+    
+    InputDeduplicator()
+    {
+        this(10000);
+    }
+    
+    InputDeduplicator(final int maxRecent)
+    {
+        this.maxRecent = maxRecent;
+        recent = new LinkedHashMap<String, MatchResults>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MatchResults> eldest)
+            {
+                return size() > maxRecent;
+            }
+        };
+    }
+    
+    /**
+     * @return true if <code>item</code> has to be matched. Otherwise its 
+     * results are passed to <code>delivery</code>, now or once the group's
+     * representative has been matched.
+     */
+    boolean admit(Matchable item, Delivery delivery)
+    {
+        final String key = Fingerprints.of(item, true);
+        if (key == null) return true;
+        
+        final MatchResults known;
+        synchronized (this)
+        {
+            known = recent.get(key);
+            if (known == null)
+            {
+                final Group group = pending.get(key);
+                if (group == null)
+                {
+                    final Group created = new Group(key);
+                    pending.put(key, created);
+                    byRepresentative.put(item.getId(), created);
+                    return true;
+                }
+                group.waiting.add(item.getId());
+            }
+            nSaved.incrementAndGet();
+        }
+        if (known != null) delivery.deliver(known.withMatchedId(item.getId()));
+        return false;
+    }
+    
+    /**
+     * Record the results of a matched item and pass them on to the members 
+     * of its group that are waiting for them.
+     */
+    void completed(MatchResults results, Delivery delivery)
+    {
+        final List<String> waiting;
+        synchronized (this)
+        {
+            final Group group = byRepresentative.remove(results.matchedId);
+            if (group == null) return;
+            pending.remove(group.key);
+            recent.put(group.key, results);
+            waiting = group.waiting;
+            group.waiting = null;
+        }
+        for (String id : waiting)
+        {
+            delivery.deliver(results.withMatchedId(id));
+        }
+    }
+    
+    /**
+     * The item with id <code>representativeId</code> could not be matched:
+     * fail the members of its group that are waiting for it.
+     */
+    void failed(String representativeId, Throwable cause, Delivery delivery)
+    {
+        final List<String> waiting;
+        synchronized (this)
+        {
+            final Group group = byRepresentative.remove(representativeId);
+            if (group == null) return;
+            pending.remove(group.key);
+            waiting = group.waiting;
+            group.waiting = null;
+        }
+        for (String id : waiting)
+        {
+            delivery.failed(id, cause);
+        }
+    }
+    
+    int getTotalSaved()
+    {
+        return nSaved.get();
+    }
+}
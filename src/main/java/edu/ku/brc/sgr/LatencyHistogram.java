@@ -0,0 +1,174 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of latencies in nanoseconds with log-linear 
+ * buckets: every power of two range is split into {@link #SUB_BUCKETS} 
+ * equal buckets, so any recorded value is reported within about 3% while
+ * the whole range of a long fits in fewer than two thousand counters.
+ * 
+ * Recording is a few atomic increments and can be done from any number of
+ * threads; {@link #snapshot()} copies the counts for reporting.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class LatencyHistogram
+{
+    public static final int SUB_BUCKET_BITS = 5;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    private static final int N_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(N_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    
+    public void record(long nanos)
+    {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(indexOf(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        
+        long currentMax;
+        while (nanos > (currentMax = max.get()))
+        {
+            if (max.compareAndSet(currentMax, nanos)) break;
+        }
+    }
+    
+    public void recordMillis(long millis)
+    {
+        record(millis * 1000000L);
+    }
+    
+    public long getCount()
+    {
+        return count.get();
+    }
+    
+    public Snapshot snapshot()
+    {
+        final long[] copy = new long[N_BUCKETS];
+        long n = 0;
+        for (int i = 0; i < N_BUCKETS; i++) 
+        {
+            copy[i] = counts.get(i);
+            n += copy[i];
+        }
+        return new Snapshot(copy, n, total.get(), max.get());
+    }
+    
+    static int indexOf(long value)
+    {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+    
+    /**
+     * @return the largest value that falls in bucket <code>index</code>.
+     */
+    static long highestValueIn(int index)
+    {
+        if (index < 2 * SUB_BUCKETS) return index;
+        final int shift = index / SUB_BUCKETS - 1;
+        final long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+    
+    /**
+     * The state of a histogram at one point in time. The count, total and 
+     * buckets are read one after another while recording continues, so they
+     * may disagree by the few values recorded in between.
+     */
+    public static class Snapshot
+    {
+        private final long[] counts;
+        public final long count;
+        public final long totalNanos;
+        public final long maxNanos;
+        
+        private Snapshot(long[] counts, long count, long totalNanos, long maxNanos)
+        {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+        
+        public double getMeanNanos()
+        {
+            return (count > 0) ? (double) totalNanos / count : 0.0;
+        }
+        
+        /**
+         * @param quantile between 0 and 1.
+         * @return the value below which <code>quantile</code> of the recorded
+         * values fall, rounded up to the end of its bucket.
+         */
+        public long getValueAt(double quantile)
+        {
+            if (count == 0) return 0;
+            final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++)
+            {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(highestValueIn(i), maxNanos);
+            }
+            return maxNanos;
+        }
+        
+        /**
+         * @return count, mean, p50, p90, p99, p999 and max in milliseconds.
+         */
+        public Map<String, Double> toMillis()
+        {
+            final Map<String, Double> m = new LinkedHashMap<String, Double>();
+            m.put("count", (double) count);
+            m.put("mean", getMeanNanos() / 1e6);
+            m.put("p50", getValueAt(0.5) / 1e6);
+            m.put("p90", getValueAt(0.9) / 1e6);
+            m.put("p99", getValueAt(0.99) / 1e6);
+            m.put("p999", getValueAt(0.999) / 1e6);
+            m.put("max", maxNanos / 1e6);
+            return m;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return String.format("n=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms", 
+                    count, getMeanNanos() / 1e6, getValueAt(0.5) / 1e6, 
+                    getValueAt(0.99) / 1e6, maxNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,651 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.MoreLikeThisParams;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * An in-memory inverted index over a batch of records, for finding 
+ * duplicates within the batch without loading it into SOLR first.
+ * 
+ * Values of the similarity fields are lower cased and split into words. 
+ * Postings are kept in flat int arrays: for each term the ids of the 
+ * records containing it and the term's frequency in each. Matching follows
+ * SOLR's MLT handler with the default similarity: the record's most 
+ * interesting terms (by tf * idf, honouring mlt.mintf, mlt.mindf, mlt.maxqt
+ * and mlt.boost from the query) form a disjunction whose hits are scored by
+ * idf&sup2; * &radic;tf * field length norm, times the fraction of query
+ * terms matched. Scores are comparable between records of one index but 
+ * not with scores from SOLR.
+ * 
+ * The index is read only once built and can be queried from any number of
+ * threads. Its {@link Matchable}s ignore the server they are given, so they
+ * run through {@link SGRMatcher} and {@link BatchMatcher} like any others.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class LocalMatchIndex
+{
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final int DEFAULT_MAX_QUERY_TERMS = 25;
+    
+    private final ImmutableList<SGRRecord> records;
+    private final ImmutableList<String> fields;
+    private final Map<String, Integer> termIds;
+    
+    // Per term: its field and, for posting i, postingDocs[i] and postingTfs[i] 
+    // for i in postingStart[term] until postingStart[term + 1].
+    private final String[] termText;
+    private final int[] termField;
+    private final int[] postingStart;
+    private final int[] postingDocs;
+    private final int[] postingTfs;
+    
+    // Per record: its terms and their frequencies in the same layout, and 
+    // the number of words in each field.
+    private final int[] docStart;
+    private final int[] docTerms;
+    private final int[] docTfs;
+    private final float[] fieldNorms;
+    
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>()
+    {
+        @Override
+        protected Scratch initialValue() { return new Scratch(records.size()); }
+    };
+    
+    /**
+     * Index <code>records</code> on <code>similarityFields</code>, a comma 
+     * separated list as in {@link SGRMatcher.Factory#similarityFields}, 
+     * with <code>nThreads</code> threads each indexing a share of them.
+     */
+    public static LocalMatchIndex build(List<SGRRecord> records, String similarityFields, 
+                                        int nThreads)
+    {
+        return new LocalMatchIndex(records, 
+                ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings()
+                        .split(similarityFields)), 
+                nThreads);
+    }
+    
+    private LocalMatchIndex(List<SGRRecord> records, ImmutableList<String> fields, int nThreads)
+    {
+        this.records = ImmutableList.copyOf(records);
+        this.fields = fields;
+        final int nDocs = this.records.size();
+        
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nThreads), 
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sgr-index-%d").build());
+        try
+        {
+            // Tokenize each chunk of records against a dictionary of its own.
+            final List<Chunk> chunks = Lists.newArrayList();
+            final int chunkSize = Math.max(1, (nDocs + nThreads - 1) / Math.max(1, nThreads));
+            for (int from = 0; from < nDocs; from += chunkSize)
+            {
+                chunks.add(new Chunk(from, Math.min(nDocs, from + chunkSize)));
+            }
+            runAll(executor, chunks, new ChunkTask() 
+            {
+                @Override
+                public void run(Chunk chunk) { chunk.tokenize(); } 
+            });
+            
+            // Merge the dictionaries in record order.
+            termIds = Maps.newHashMap();
+            final List<String> texts = Lists.newArrayList();
+            final List<Integer> fieldOfTerm = Lists.newArrayList();
+            docStart = new int[nDocs + 1];
+            for (Chunk chunk : chunks)
+            {
+                chunk.toGlobal = new int[chunk.terms.size()];
+                for (int l = 0; l < chunk.toGlobal.length; l++)
+                {
+                    final String term = chunk.terms.get(l);
+                    Integer id = termIds.get(term);
+                    if (id == null)
+                    {
+                        id = texts.size();
+                        termIds.put(term, id);
+                        texts.add(term);
+                        fieldOfTerm.add(chunk.termFields.get(l));
+                    }
+                    chunk.toGlobal[l] = id;
+                }
+                for (int doc = chunk.from; doc < chunk.to; doc++)
+                {
+                    docStart[doc + 1] = docStart[doc] + chunk.docTermIds[doc - chunk.from].length;
+                }
+            }
+            
+            final int nTerms = texts.size();
+            termText = texts.toArray(new String[nTerms]);
+            termField = new int[nTerms];
+            for (int t = 0; t < nTerms; t++) termField[t] = fieldOfTerm.get(t);
+            
+            // Lay out each record's terms and count each chunk's postings.
+            final int nPostings = docStart[nDocs];
+            docTerms = new int[nPostings];
+            docTfs = new int[nPostings];
+            fieldNorms = new float[nDocs * fields.size()];
+            runAll(executor, chunks, new ChunkTask() 
+            {
+                @Override
+                public void run(Chunk chunk) { chunk.layOut(nTerms); } 
+            });
+            
+            // Each chunk fills its own range of every term's postings.
+            postingStart = new int[nTerms + 1];
+            for (Chunk chunk : chunks)
+            {
+                for (int t = 0; t < nTerms; t++) postingStart[t + 1] += chunk.fill[t];
+            }
+            for (int t = 0; t < nTerms; t++) postingStart[t + 1] += postingStart[t];
+            final int[] next = Arrays.copyOf(postingStart, nTerms);
+            for (Chunk chunk : chunks)
+            {
+                for (int t = 0; t < nTerms; t++)
+                {
+                    final int n = chunk.fill[t];
+                    chunk.fill[t] = next[t];
+                    next[t] += n;
+                }
+            }
+            postingDocs = new int[nPostings];
+            postingTfs = new int[nPostings];
+            runAll(executor, chunks, new ChunkTask() 
+            {
+                @Override
+                public void run(Chunk chunk) { chunk.post(); } 
+            });
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+    
+    private interface ChunkTask
+    {
+        void run(Chunk chunk);
+    }
+    
+    private static void runAll(ExecutorService executor, List<Chunk> chunks, final ChunkTask task)
+    {
+        final List<Future<?>> running = Lists.newArrayList();
+        for (final Chunk chunk : chunks)
+        {
+            running.add(executor.submit(new Runnable()
+            {
+                @Override
+                public void run() { task.run(chunk); }
+            }));
+        }
+        try
+        {
+            for (Future<?> f : running) f.get();
+        } catch (InterruptedException e)
+        {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+    
+    /**
+     * The records from <code>from</code> until <code>to</code>, indexed by
+     * one thread.
+     */
+    private class Chunk
+    {
+        final int from;
+        final int to;
+        
+        // The chunk's own dictionary and the global id of each of its terms.
+        final List<String> terms = Lists.newArrayList();
+        final List<Integer> termFields = Lists.newArrayList();
+        int[] toGlobal;
+        
+        // Per record, the local ids of its terms and their frequencies.
+        int[][] docTermIds;
+        int[][] docTermTfs;
+        
+        // The number of postings of each term in this chunk, and then where
+        // the next of them goes.
+        int[] fill;
+        
+        Chunk(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+        
+        void tokenize()
+        {
+            final Map<String, Integer> local = Maps.newHashMap();
+            docTermIds = new int[to - from][];
+            docTermTfs = new int[to - from][];
+            for (int doc = from; doc < to; doc++)
+            {
+                final Map<String, int[]> tokens = LocalMatchIndex.this.tokenize(records.get(doc));
+                final int[] ids = new int[tokens.size()];
+                final int[] tfs = new int[tokens.size()];
+                int i = 0;
+                for (Map.Entry<String, int[]> e : tokens.entrySet())
+                {
+                    Integer id = local.get(e.getKey());
+                    if (id == null)
+                    {
+                        id = terms.size();
+                        local.put(e.getKey(), id);
+                        terms.add(e.getKey());
+                        termFields.add(e.getValue()[1]);
+                    }
+                    ids[i] = id;
+                    tfs[i++] = e.getValue()[0];
+                }
+                docTermIds[doc - from] = ids;
+                docTermTfs[doc - from] = tfs;
+            }
+        }
+        
+        void layOut(int nTerms)
+        {
+            fill = new int[nTerms];
+            final int nFields = fields.size();
+            final int[] fieldLengths = new int[nFields];
+            for (int doc = from; doc < to; doc++)
+            {
+                Arrays.fill(fieldLengths, 0);
+                final int[] ids = docTermIds[doc - from];
+                final int[] tfs = docTermTfs[doc - from];
+                int at = docStart[doc];
+                for (int i = 0; i < ids.length; i++)
+                {
+                    final int t = toGlobal[ids[i]];
+                    docTerms[at] = t;
+                    docTfs[at++] = tfs[i];
+                    fill[t]++;
+                    fieldLengths[termField[t]] += tfs[i];
+                }
+                for (int f = 0; f < nFields; f++)
+                {
+                    fieldNorms[doc * nFields + f] = 
+                        (fieldLengths[f] > 0) ? (float) (1.0 / Math.sqrt(fieldLengths[f])) : 0.0f;
+                }
+            }
+            docTermIds = null;
+            docTermTfs = null;
+        }
+        
+        void post()
+        {
+            for (int doc = from; doc < to; doc++)
+            {
+                for (int p = docStart[doc]; p < docStart[doc + 1]; p++)
+                {
+                    final int t = docTerms[p];
+                    postingDocs[fill[t]] = doc;
+                    postingTfs[fill[t]++] = docTfs[p];
+                }
+            }
+            fill = null;
+        }
+    }
+    
+    /**
+     * @return the terms of <code>record</code>, as field code and word 
+     * separated by a colon, mapped to their frequency and field index.
+     */
+    private Map<String, int[]> tokenize(SGRRecord record)
+    {
+        final Map<String, int[]> terms = Maps.newLinkedHashMap();
+        for (int f = 0; f < fields.size(); f++)
+        {
+            final String field = fields.get(f);
+            final int rf = record.fieldIndex(field);
+            for (int i = 0; rf >= 0 && i < record.nValues(rf); i++)
+            {
+                final Matcher m = WORD.matcher(record.value(rf, i));
+                while (m.find())
+                {
+                    final String term = field + ':' + m.group().toLowerCase(Locale.ROOT);
+                    final int[] tf = terms.get(term);
+                    if (tf != null) tf[0]++;
+                    else terms.put(term, new int[] {1, f});
+                }
+            }
+        }
+        return terms;
+    }
+    
+    public int size()
+    {
+        return records.size();
+    }
+    
+    public ImmutableList<String> getFields()
+    {
+        return fields;
+    }
+    
+    /**
+     * @return an item matching <code>record</code>, which need not be in the
+     * index, against the indexed records.
+     */
+    public Matchable matchable(final SGRRecord record)
+    {
+        return new Matchable()
+        {
+            @Override
+            public String getId() { return record.id; }
+            
+            @Override
+            public MatchResults doMatch(SolrServer server, SolrQuery query)
+            {
+                final Map<String, int[]> terms = tokenize(record);
+                final int[] ids = new int[terms.size()];
+                final int[] tfs = new int[terms.size()];
+                int n = 0;
+                for (Map.Entry<String, int[]> e : terms.entrySet())
+                {
+                    final Integer t = termIds.get(e.getKey());
+                    if (t == null) continue;
+                    ids[n] = t;
+                    tfs[n++] = e.getValue()[0];
+                }
+                return match(record.id, -1, ids, tfs, n, query);
+            }
+        };
+    }
+    
+    /**
+     * @return an item matching the <code>doc</code>th indexed record against 
+     * the others.
+     */
+    public Matchable indexedMatchable(final int doc)
+    {
+        return new Matchable()
+        {
+            @Override
+            public String getId() { return records.get(doc).id; }
+            
+            @Override
+            public MatchResults doMatch(SolrServer server, SolrQuery query)
+            {
+                final int from = docStart[doc];
+                final int n = docStart[doc + 1] - from;
+                return match(getId(), doc, Arrays.copyOfRange(docTerms, from, from + n),
+                             Arrays.copyOfRange(docTfs, from, from + n), n, query);
+            }
+        };
+    }
+    
+    /**
+     * @return items matching every indexed record against the others, for
+     * finding the duplicates within a batch with a {@link BatchMatcher}.
+     */
+    public Iterator<Matchable> selfMatchables()
+    {
+        return new AbstractIterator<Matchable>()
+        {
+            private int next = 0;
+            
+            @Override
+            protected Matchable computeNext()
+            {
+                return (next < records.size()) ? indexedMatchable(next++) : endOfData();
+            }
+        };
+    }
+    
+    private MatchResults match(String id, int self, int[] terms, int[] tfs, int nTerms, 
+                               SolrQuery query)
+    {
+        final long start = System.nanoTime();
+        final int nRows = (query.getRows() != null) ? query.getRows() : 10;
+        final int minTf = query.getInt(MoreLikeThisParams.MIN_TERM_FREQ, 2);
+        final int minDf = query.getInt(MoreLikeThisParams.MIN_DOC_FREQ, 5);
+        final int maxTerms = query.getInt(MoreLikeThisParams.MAX_QUERY_TERMS, DEFAULT_MAX_QUERY_TERMS);
+        final boolean boost = query.getBool(MoreLikeThisParams.BOOST, false);
+        final boolean explain = query.getBool(CommonParams.DEBUG_QUERY, false);
+        final int nDocs = records.size();
+        
+        // Pick the most interesting terms.
+        final Integer[] order = new Integer[nTerms];
+        final float[] interest = new float[nTerms];
+        final float[] idf = new float[nTerms];
+        int nCandidates = 0;
+        for (int i = 0; i < nTerms; i++)
+        {
+            final int df = postingStart[terms[i] + 1] - postingStart[terms[i]];
+            if (tfs[i] < minTf || df < minDf) continue;
+            idf[i] = (float) (1.0 + Math.log((double) nDocs / (df + 1)));
+            interest[i] = tfs[i] * idf[i];
+            order[nCandidates++] = i;
+        }
+        Arrays.sort(order, 0, nCandidates, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b) { return Float.compare(interest[b], interest[a]); }
+        });
+        final int nQuery = Math.min(nCandidates, maxTerms);
+        
+        // Score the records containing any of them.
+        final Scratch s = scratch.get();
+        s.reset();
+        final int[] queryTerms = new int[nQuery];
+        final float[] queryWeights = new float[nQuery];
+        for (int k = 0; k < nQuery; k++)
+        {
+            final int i = order[k];
+            final int t = terms[i];
+            final float termBoost = boost ? interest[i] / interest[order[0]] : 1.0f;
+            final float weight = termBoost * idf[i] * idf[i];
+            final int field = termField[t];
+            queryTerms[k] = t;
+            queryWeights[k] = weight;
+            for (int p = postingStart[t]; p < postingStart[t + 1]; p++)
+            {
+                final int doc = postingDocs[p];
+                if (doc == self) continue;
+                final float w = weight * (float) Math.sqrt(postingTfs[p]) 
+                    * fieldNorms[doc * fields.size() + field];
+                s.add(doc, w);
+            }
+        }
+        
+        final int[] top = s.top(nRows, nQuery);
+        final ImmutableList.Builder<Match> matches = ImmutableList.builder();
+        float maxScore = 0.0f;
+        for (int doc : top)
+        {
+            final float score = s.score(doc, nQuery);
+            maxScore = Math.max(maxScore, score);
+            matches.add(new Match(records.get(doc), score, 
+                    explain ? explain(s, doc, queryTerms, queryWeights) : null));
+        }
+        final int qTime = (int) ((System.nanoTime() - start) / 1000000L);
+        return new MatchResults(id, qTime, maxScore, matches.build());
+    }
+    
+    /**
+     * @return an explanation in the text form SOLR uses, with one weight
+     * line per field so that per field contributions can be read back from
+     * it. The contributions are worked out again from the record's terms, 
+     * only for the records returned.
+     */
+    private String explain(Scratch s, int doc, int[] queryTerms, float[] queryWeights)
+    {
+        final int nFields = fields.size();
+        final float[] byField = new float[nFields];
+        for (int k = 0; k < queryTerms.length; k++)
+        {
+            for (int p = docStart[doc]; p < docStart[doc + 1]; p++)
+            {
+                if (docTerms[p] != queryTerms[k]) continue;
+                final int field = termField[docTerms[p]];
+                byField[field] += queryWeights[k] * (float) Math.sqrt(docTfs[p]) 
+                    * fieldNorms[doc * nFields + field];
+            }
+        }
+        
+        final int nQuery = queryTerms.length;
+        final float coord = (float) s.matched[doc] / nQuery;
+        final StringBuilder sb = new StringBuilder();
+        sb.append(s.score(doc, nQuery)).append(" = (MATCH) product of:\n");
+        sb.append("  ").append(s.scores[doc]).append(" = (MATCH) sum of:\n");
+        for (int f = 0; f < nFields; f++)
+        {
+            if (byField[f] == 0.0f) continue;
+            sb.append("    ").append(byField[f] * coord).append(" = (MATCH) weight(")
+              .append(fields.get(f)).append(":* in ").append(doc).append(")\n");
+        }
+        sb.append("  ").append(coord).append(" = coord(").append(s.matched[doc]).append('/')
+          .append(nQuery).append(")\n");
+        return sb.toString();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "LocalMatchIndex(" + records.size() + " records, " + termText.length + " terms)";
+    }
+    
+    /**
+     * Per thread score accumulators, sized for the whole index and cleared
+     * only where they were used.
+     */
+    private class Scratch
+    {
+        final float[] scores;
+        final int[] matched;
+        final int[] touched;
+        int nTouched = 0;
+        
+        Scratch(int nDocs)
+        {
+            scores = new float[nDocs];
+            matched = new int[nDocs];
+            touched = new int[nDocs];
+        }
+        
+        void reset()
+        {
+            for (int i = 0; i < nTouched; i++)
+            {
+                final int doc = touched[i];
+                scores[doc] = 0.0f;
+                matched[doc] = 0;
+            }
+            nTouched = 0;
+        }
+        
+        void add(int doc, float w)
+        {
+            if (matched[doc]++ == 0) touched[nTouched++] = doc;
+            scores[doc] += w;
+        }
+        
+        float score(int doc, int nQuery)
+        {
+            return scores[doc] * matched[doc] / nQuery;
+        }
+        
+        /**
+         * @return the best <code>n</code> records, best first.
+         */
+        int[] top(int n, int nQuery)
+        {
+            // A min heap of the best records seen so far.
+            final int k = Math.min(n, nTouched);
+            final int[] heap = new int[k];
+            int size = 0;
+            for (int i = 0; i < nTouched; i++)
+            {
+                final int doc = touched[i];
+                if (size < k)
+                {
+                    heap[size++] = doc;
+                    if (size == k) for (int j = k / 2 - 1; j >= 0; j--) siftDown(heap, j, k, nQuery);
+                }
+                else if (k > 0 && score(doc, nQuery) > score(heap[0], nQuery))
+                {
+                    heap[0] = doc;
+                    siftDown(heap, 0, k, nQuery);
+                }
+            }
+            
+            final int[] top = new int[size];
+            for (int end = size - 1; end >= 0; end--)
+            {
+                top[end] = heap[0];
+                heap[0] = heap[end];
+                siftDown(heap, 0, end, nQuery);
+            }
+            return top;
+        }
+        
+        private void siftDown(int[] heap, int i, int size, int nQuery)
+        {
+            while (true)
+            {
+                final int left = 2 * i + 1;
+                if (left >= size) return;
+                int least = left;
+                if (left + 1 < size && score(heap[left + 1], nQuery) < score(heap[left], nQuery))
+                {
+                    least = left + 1;
+                }
+                if (score(heap[least], nQuery) >= score(heap[i], nQuery)) return;
+                final int t = heap[i];
+                heap[i] = heap[least];
+                heap[least] = t;
+                i = least;
+            }
+        }
+    }
+}
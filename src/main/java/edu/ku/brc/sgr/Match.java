@@ -17,14 +17,16 @@
  */
 package edu.ku.brc.sgr;
 
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import org.apache.solr.common.util.NamedList;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
 
 /**
+ * A matched record with its score and explanation. A structured explanation
+ * is kept as returned and only rendered as text when 
+ * {@link #getExplained()} is called; the explained field that this replaced
+ * is no longer public.
+ * 
  * @author ben
  *
  * @code_status Alpha
@@ -36,15 +38,17 @@ public class Match
 {
     public final SGRRecord match;
     public final float score;
-    public final String explained;
     
+    // Null until rendered from structuredExplain.
+    private String explained;
+    private final NamedList<?> structuredExplain;
+    private float[] _contributions = null;
     private ImmutableMap<String, Float> _fieldScoreContributions = null;
     
-    private static final Pattern explainFieldRegexp = Pattern.compile(
-            "([^\\s]+) = \\(MATCH\\) weight\\(([^\\:]+)\\:([^\\s]+)");
+    private static final ExplainParser explainParser = new ExplainParser(FieldDictionary.SHARED);
     
     public Match(SGRRecord match, float score) {
-        this(match, score, null);
+        this(match, score, (String) null);
     }
 
     public Match(SGRRecord match, float score, String explained)
@@ -53,24 +57,78 @@ public class Match
         this.score = score;
         if (explained == null) explained = "";
         this.explained = explained;
+        this.structuredExplain = null;
+    }
+
+    /**
+     * Create a match whose field contributions, indexed by 
+     * {@link FieldDictionary#SHARED} code, are already known.
+     */
+    Match(SGRRecord match, float score, String explained, float[] contributions)
+    {
+        this(match, score, explained);
+        this._contributions = contributions;
+    }
+
+    /**
+     * Create a match from the explanation returned with 
+     * <code>debug.explain.structured=true</code>.
+     */
+    public Match(SGRRecord match, float score, NamedList<?> structuredExplain)
+    {
+        this.match = match;
+        this.score = score;
+        this.explained = (structuredExplain != null) ? null : "";
+        this.structuredExplain = structuredExplain;
+    }
+    
+    /**
+     * @return the explanation as text, or "" if there is none.
+     */
+    public String getExplained()
+    {
+        // Racing threads may each render it; any of them will do.
+        String e = explained;
+        if (e == null) e = explained = structuredExplain.toString();
+        return e;
+    }
+    
+    /**
+     * @return the score contribution of each field, indexed by 
+     * {@link FieldDictionary#SHARED} code. Fields with codes beyond the end of
+     * the array did not contribute.
+     */
+    public float[] fieldContributions()
+    {
+        if (_contributions == null)
+        {
+            _contributions = (structuredExplain != null) ? 
+                    explainParser.parse(structuredExplain) : explainParser.parse(explained);
+        }
+        return _contributions;
+    }
+    
+    public float fieldContribution(String field)
+    {
+        final int code = FieldDictionary.SHARED.existingCodeOf(field);
+        final float[] contributions = fieldContributions();
+        return (code >= 0 && code < contributions.length) ? contributions[code] : 0.0f;
     }
     
     public ImmutableMap<String, Float> fieldScoreContributions()
     {
         if (_fieldScoreContributions == null)
         {
-            Map<String, Float> data = Maps.newHashMap();
-            Matcher matcher = explainFieldRegexp.matcher(explained);
-            while (matcher.find())
+            final float[] contributions = fieldContributions();
+            final ImmutableMap.Builder<String, Float> data = ImmutableMap.builder();
+            for (int code = 0; code < contributions.length; code++)
             {
-                String contribution = matcher.group(1);
-                String field = matcher.group(2);
-                
-                Float cur = data.get(field);
-                if (cur == null) cur = 0.0f;
-                data.put(field, cur + Float.parseFloat(contribution));
+                if (contributions[code] != 0.0f) 
+                {
+                    data.put(FieldDictionary.SHARED.nameOf(code), contributions[code]);
+                }
             }
-            _fieldScoreContributions = ImmutableMap.copyOf(data);
+            _fieldScoreContributions = data.build();
         }
             
         return _fieldScoreContributions;
@@ -22,6 +22,15 @@ import java.util.Iterator;
 import com.google.common.collect.ImmutableList;
 
 /**
+ * The matches found for one item. Results from a score only request hold 
+ * just the ids and scores of the matches; {@link #getMatches()} then 
+ * creates Match objects with records holding only the id, the first time 
+ * it is called. {@link #size()}, {@link #getMatchId(int)} and 
+ * {@link #getScore(int)} work without creating them.
+ * 
+ * The matches used to be the public field <code>matches</code>; callers
+ * now use {@link #getMatches()}, or iterate the results.
+ * 
  * @author ben
  *
  * @code_status Alpha
@@ -31,22 +40,109 @@ import com.google.common.collect.ImmutableList;
  */
 public class MatchResults implements Iterable<Match>
 {
-    public final ImmutableList<Match> matches;
     public final float maxScore; 
     public final String matchedId;
     public final int qTime;
     
+    private volatile ImmutableList<Match> matches;
+    private final String[] ids;
+    private final float[] scores;
+    
     public MatchResults(String matchedId, int qTime, float maxScore, 
                         ImmutableList<Match> matches) {
         this.qTime = qTime;
         this.maxScore = maxScore;
         this.matches = matches;
         this.matchedId = matchedId;
+        this.ids = null;
+        this.scores = null;
+    }
+    
+    /**
+     * Results holding only the ids and scores of the matches, best first.
+     */
+    public MatchResults(String matchedId, int qTime, float maxScore, 
+                        String[] ids, float[] scores) {
+        if (ids.length != scores.length) 
+        {
+            throw new IllegalArgumentException("ids and scores differ in length");
+        }
+        this.qTime = qTime;
+        this.maxScore = maxScore;
+        this.matches = null;
+        this.matchedId = matchedId;
+        this.ids = ids;
+        this.scores = scores;
+    }
+
+    /**
+     * @return these results attributed to another record with the same 
+     * content.
+     */
+    public MatchResults withMatchedId(String id)
+    {
+        if (id.equals(matchedId)) return this;
+        return copy(id, qTime);
+    }
+    
+    /**
+     * @return these results as returned from a cache for <code>id</code>:
+     * no query was run, so the qTime is 0.
+     */
+    public MatchResults cachedFor(String id)
+    {
+        return copy(id, 0);
+    }
+    
+    private MatchResults copy(String id, int qTime)
+    {
+        return (ids != null) ? 
+                new MatchResults(id, qTime, maxScore, ids, scores) :
+                new MatchResults(id, qTime, maxScore, getMatches());
+    }
+    
+    public int size()
+    {
+        return (ids != null) ? ids.length : matches.size();
+    }
+    
+    public String getMatchId(int i)
+    {
+        return (ids != null) ? ids[i] : matches.get(i).match.id;
+    }
+    
+    public float getScore(int i)
+    {
+        return (scores != null) ? scores[i] : matches.get(i).score;
+    }
+    
+    /**
+     * @return whether the matches carry the matched records and their 
+     * explanations, rather than just ids and scores.
+     */
+    public boolean hasRecords()
+    {
+        return ids == null;
+    }
+    
+    public ImmutableList<Match> getMatches()
+    {
+        ImmutableList<Match> m = matches;
+        if (m == null)
+        {
+            final ImmutableList.Builder<Match> builder = ImmutableList.builder();
+            for (int i = 0; i < ids.length; i++)
+            {
+                builder.add(new Match(SGRRecord.builder(ids[i]).build(), scores[i]));
+            }
+            m = matches = builder.build();
+        }
+        return m;
     }
 
     @Override
     public Iterator<Match> iterator()
     {
-        return matches.iterator();
+        return getMatches().iterator();
     }
 }
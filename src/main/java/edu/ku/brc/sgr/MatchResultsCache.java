@@ -0,0 +1,346 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An LRU cache of match results keyed by content fingerprint, bounded by 
+ * the number of entries and by age. Entries can also be written to a 
+ * directory, one file per key, which survives eviction and restarts and is
+ * subject to the same age limit.
+ * 
+ * Entries read back from disk keep their explanations as text, with the
+ * per field score contributions stored alongside so that those parsed from
+ * structured explanations survive. Results returned from the cache have a
+ * qTime of 0, since no query was run for them. Results holding only ids
+ * and scores are stored as such, without creating their matches.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class MatchResultsCache
+{
+    // Changed whenever the entries or their keys change, so that entries 
+    // written by an earlier version are misses.
+    private static final int FORMAT = 3;
+    
+    public final int maxEntries;
+    public final long ttlMillis;
+    public final File directory;
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    
+    private final LinkedHashMap<String, Entry> entries;
+    
+    private static class Entry
+    {
+        final MatchResults results;
+        final long created;
+        
+        Entry(MatchResults results, long created)
+        {
+            this.results = results;
+            this.created = created;
+        }
+    }
+    
+    /**
+     * @param directory where to keep the disk tier, or null for memory only.
+     */
+    public MatchResultsCache(final int maxEntries, long ttlMillis, File directory)
+    {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.directory = directory;
+        if (directory != null) directory.mkdirs();
+        
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * @return the cached results attributed to <code>matchedId</code>, or 
+     * null on a miss.
+     */
+    public MatchResults get(String key, String matchedId)
+    {
+        final long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (this)
+        {
+            entry = entries.get(key);
+            if (entry != null && now - entry.created > ttlMillis)
+            {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null)
+        {
+            hits.incrementAndGet();
+            return entry.results.cachedFor(matchedId);
+        }
+        
+        final MatchResults fromDisk = readFromDisk(key, now);
+        if (fromDisk != null)
+        {
+            diskHits.incrementAndGet();
+            return fromDisk.cachedFor(matchedId);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+    
+    public void put(String key, MatchResults results)
+    {
+        final long now = System.currentTimeMillis();
+        synchronized (this)
+        {
+            entries.put(key, new Entry(results, now));
+        }
+        writeToDisk(key, results);
+    }
+    
+    public long getHits()
+    {
+        return hits.get();
+    }
+    
+    public long getDiskHits()
+    {
+        return diskHits.get();
+    }
+    
+    public long getMisses()
+    {
+        return misses.get();
+    }
+    
+    synchronized public int size()
+    {
+        return entries.size();
+    }
+    
+    /**
+     * Entries are spread over 256 subdirectories by a hash of the whole key;
+     * the end of the key is often the same for every entry.
+     */
+    private File fileFor(String key)
+    {
+        final String name = key.replaceAll("[^A-Za-z0-9_-]", "_");
+        final int h = key.hashCode();
+        final int bucket = (h ^ (h >>> 16)) & 0xff;
+        final String subdirectory = Integer.toHexString(0x100 | bucket).substring(1);
+        return new File(new File(directory, subdirectory), name);
+    }
+    
+    private MatchResults readFromDisk(String key, long now)
+    {
+        if (directory == null) return null;
+        final File file = fileFor(key);
+        if (!file.exists()) return null;
+        if (now - file.lastModified() > ttlMillis)
+        {
+            file.delete();
+            return null;
+        }
+        
+        try
+        {
+            final DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            final MatchResults results;
+            try { results = read(in); }
+            finally { in.close(); }
+            
+            synchronized (this)
+            {
+                entries.put(key, new Entry(results, file.lastModified()));
+            }
+            return results;
+        } catch (IOException e)
+        {
+            // A damaged entry is just a miss.
+            file.delete();
+            return null;
+        }
+    }
+    
+    private void writeToDisk(String key, MatchResults results)
+    {
+        if (directory == null) return;
+        final File file = fileFor(key);
+        file.getParentFile().mkdirs();
+        final File tmp = new File(file.getPath() + "." + Thread.currentThread().getId());
+        try
+        {
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)));
+            try { write(out, results); }
+            finally { out.close(); }
+            if (!tmp.renameTo(file))
+            {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        } catch (IOException e)
+        {
+            tmp.delete();
+            throw new RuntimeException(e);
+        }
+    }
+    
+    private static void write(DataOutputStream out, MatchResults results) throws IOException
+    {
+        out.writeInt(FORMAT);
+        out.writeUTF(results.matchedId);
+        out.writeInt(results.qTime);
+        out.writeFloat(results.maxScore);
+        out.writeInt(results.size());
+        out.writeBoolean(results.hasRecords());
+        if (!results.hasRecords())
+        {
+            for (int i = 0; i < results.size(); i++)
+            {
+                out.writeUTF(results.getMatchId(i));
+                out.writeFloat(results.getScore(i));
+            }
+            return;
+        }
+        for (Match m : results)
+        {
+            out.writeUTF(m.match.id);
+            out.writeFloat(m.score);
+            writeLongString(out, m.getExplained());
+            
+            final float[] contributions = m.fieldContributions();
+            int nContributing = 0;
+            for (float c : contributions) { if (c != 0.0f) nContributing++; }
+            out.writeInt(nContributing);
+            for (int code = 0; code < contributions.length; code++)
+            {
+                if (contributions[code] == 0.0f) continue;
+                out.writeUTF(FieldDictionary.SHARED.nameOf(code));
+                out.writeFloat(contributions[code]);
+            }
+            
+            final SGRRecord record = m.match;
+            out.writeInt(record.nFields());
+            for (int f = 0; f < record.nFields(); f++)
+            {
+                out.writeUTF(record.fieldName(f));
+                out.writeInt(record.nValues(f));
+                for (int i = 0; i < record.nValues(f); i++) { writeLongString(out, record.value(f, i)); }
+            }
+        }
+    }
+    
+    private static MatchResults read(DataInputStream in) throws IOException
+    {
+        if (in.readInt() != FORMAT) throw new IOException("unknown cache entry format");
+        final String matchedId = in.readUTF();
+        final int qTime = in.readInt();
+        final float maxScore = in.readFloat();
+        final int n = in.readInt();
+        if (!in.readBoolean())
+        {
+            final String[] ids = new String[n];
+            final float[] scores = new float[n];
+            for (int i = 0; i < n; i++)
+            {
+                ids[i] = in.readUTF();
+                scores[i] = in.readFloat();
+            }
+            return new MatchResults(matchedId, qTime, maxScore, ids, scores);
+        }
+        final ImmutableList.Builder<Match> matches = ImmutableList.builder();
+        for (int i = 0; i < n; i++)
+        {
+            final SGRRecord.Builder record = SGRRecord.builder(in.readUTF());
+            final float score = in.readFloat();
+            final String explained = readLongString(in);
+            
+            final int nContributing = in.readInt();
+            float[] contributions = new float[FieldDictionary.SHARED.size()];
+            for (int c = 0; c < nContributing; c++)
+            {
+                final int code = FieldDictionary.SHARED.codeOf(in.readUTF());
+                if (code >= contributions.length) 
+                {
+                    contributions = Arrays.copyOf(contributions, code + 1);
+                }
+                contributions[code] = in.readFloat();
+            }
+            
+            final int nFields = in.readInt();
+            for (int f = 0; f < nFields; f++)
+            {
+                final String field = in.readUTF();
+                final int nValues = in.readInt();
+                for (int v = 0; v < nValues; v++) { record.put(field, readLongString(in)); }
+            }
+            matches.add(new Match(record.build(), score, explained, contributions));
+        }
+        return new MatchResults(matchedId, qTime, maxScore, matches.build());
+    }
+    
+    /**
+     * writeUTF is limited to 64K, which explanations can exceed.
+     */
+    private static void writeLongString(DataOutputStream out, String s) throws IOException
+    {
+        final byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readLongString(DataInputStream in) throws IOException
+    {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
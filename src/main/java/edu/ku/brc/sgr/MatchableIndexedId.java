@@ -20,9 +20,11 @@ package edu.ku.brc.sgr;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.NamedList;
 
 import com.google.common.collect.ImmutableList;
 
@@ -58,8 +60,21 @@ public class MatchableIndexedId implements Matchable
     @Override
     public MatchResults doMatch(SolrServer server, SolrQuery baseQuery)
     {
+        if (server instanceof ShardedSolrServer) return matchSupplied(server, baseQuery);
+        
         final SolrQuery query = baseQuery.getCopy();
         query.setQuery("id:" + id);
+        
+        if (ScoreOnlyResponseParser.applies(query))
+        {
+            final QueryRequest req = new QueryRequest(query);
+            req.setResponseParser(ScoreOnlyResponseParser.INSTANCE);
+            final NamedList<Object> resp;
+            try { resp = server.request(req); }
+            catch (Exception e) { throw new RuntimeException(e); }
+            return ScoreOnlyResponseParser.scored(resp.get("response"))
+                .toMatchResults(id, ScoreOnlyResponseParser.qTime(resp));
+        }
 
         final QueryResponse resp;
         try { resp = server.query(query); } 
@@ -82,4 +97,26 @@ public class MatchableIndexedId implements Matchable
         }
         return new MatchResults(id, resp.getQTime(), maxScore, msBuilder.build());        
     }
+    
+    /**
+     * A shard only finds matches for an id it holds itself, so fetch the 
+     * document and supply it to every shard instead, excluding the document
+     * itself from the matches.
+     */
+    private MatchResults matchSupplied(SolrServer server, SolrQuery baseQuery)
+    {
+        final SolrQuery fetch = new SolrQuery("id:" + id);
+        fetch.setRows(1);
+        final SolrDocumentList docs;
+        try { docs = server.query(fetch).getResults(); }
+        catch (SolrServerException e) { throw new RuntimeException(e); }
+        
+        if (docs == null || docs.isEmpty())
+        {
+            return new MatchResults(id, 0, 0.0f, ImmutableList.<Match>of());
+        }
+        final SolrQuery query = baseQuery.getCopy();
+        query.addFilterQuery("-id:" + id);
+        return new MatchableRecord(SGRRecord.fromSolrDocument(docs.get(0))).doMatch(server, query);
+    }
 }
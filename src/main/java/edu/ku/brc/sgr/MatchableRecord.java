@@ -17,7 +17,7 @@
  */
 package edu.ku.brc.sgr;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.solr.client.solrj.SolrQuery;
@@ -28,6 +28,7 @@ import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.MoreLikeThisParams;
+import org.apache.solr.common.util.NamedList;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
@@ -42,6 +43,8 @@ import com.google.common.collect.Maps;
  */
 public class MatchableRecord implements Matchable
 {
+    public static final String MULTI_DOC_RESULTS = "matchesByDocument";
+    
     final public SGRRecord record;
     
     public MatchableRecord(SGRRecord record) { this.record = record; }
@@ -67,6 +70,21 @@ public class MatchableRecord implements Matchable
         final MoreLikeThisDocumentRequest req = 
             new MoreLikeThisDocumentRequest(query)
                 .addDocument(record.asSolrDocument());
+        
+        if (ScoreOnlyResponseParser.applies(baseQuery))
+        {
+            req.setResponseParser(ScoreOnlyResponseParser.INSTANCE);
+            final NamedList<Object> resp;
+            try
+            {
+                resp = server.request(req);
+            } catch (Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+            return ScoreOnlyResponseParser.scored(resp.get("response"))
+                .toMatchResults(record.id, ScoreOnlyResponseParser.qTime(resp));
+        }
 
         final QueryResponse resp;
         try
@@ -79,10 +97,108 @@ public class MatchableRecord implements Matchable
         }
         
 
-        final SolrDocumentList docs = resp.getResults();
-        Map<String, String> explain = resp.getExplainMap();
-        if (explain == null) explain = Maps.newHashMap(); 
+        final Map<String, Object> debug = resp.getDebugMap(); 
+        final Object explained = (debug != null) ? debug.get("explain") : null;
+
+        return toMatchResults(record.id, resp.getQTime(), resp.getResults(), 
+                              explainMap(explained));
+    }
+    
+    /**
+     * Match several records with a single request by supplying all of their
+     * documents at once. The MLT handler answers such a request with one
+     * section per supplied document under {@link #MULTI_DOC_RESULTS}, keyed
+     * by document id.
+     * 
+     * @return the results in the same order as <code>records</code>, or null
+     * if the handler did not return per document results.
+     */
+    public static List<MatchResults> doMatch(SolrServer server, SolrQuery baseQuery,
+                                             List<MatchableRecord> records)
+    {
+        final ModifiableSolrParams query = 
+            baseQuery.getCopy().set(MoreLikeThisParams.DOC_SUPPLIED, true);
+
+        final MoreLikeThisDocumentRequest req = new MoreLikeThisDocumentRequest(query);
+        for (MatchableRecord r : records) 
+        {
+            req.addDocument(r.record.asSolrDocument());
+        }
+        final boolean scoreOnly = ScoreOnlyResponseParser.applies(baseQuery);
+        if (scoreOnly) req.setResponseParser(ScoreOnlyResponseParser.INSTANCE);
+
+        final NamedList<Object> resp;
+        try
+        {
+            resp = server.request(req);
+        } catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+        
+        final NamedList<?> byDoc = (NamedList<?>) resp.get(MULTI_DOC_RESULTS);
+        if (byDoc == null) return null;
+        
+        // The server only reports the time for the whole request so it is 
+        // shared out among the records.
+        final int qTime = ScoreOnlyResponseParser.qTime(resp) / records.size();
 
+        final ImmutableList.Builder<MatchResults> results = ImmutableList.builder();
+        for (MatchableRecord r : records)
+        {
+            final NamedList<?> section = (NamedList<?>) byDoc.get(r.record.id);
+            if (section == null)
+            {
+                throw new IllegalStateException("no results returned for supplied document: " 
+                        + r.record.id);
+            }
+            if (scoreOnly)
+            {
+                results.add(ScoreOnlyResponseParser.scored(section.get("response"))
+                        .toMatchResults(r.record.id, qTime));
+                continue;
+            }
+            results.add(toMatchResults(r.record.id, qTime, 
+                    (SolrDocumentList) section.get("response"), 
+                    explainMap(explained(section))));
+        }
+        return results.build();
+    }
+    
+    private static Object explained(NamedList<?> section)
+    {
+        final NamedList<?> debug = (NamedList<?>) section.get("debug");
+        return (debug != null) ? debug.get("explain") : null;
+    }
+    
+    /**
+     * @return the explanation of each matched document by id. The values 
+     * are Strings, or NamedLists when structured explanations were requested.
+     */
+    private static Map<String, Object> explainMap(Object explained)
+    {
+        final Map<String, Object> explain = Maps.newHashMap();
+        if (explained instanceof NamedList<?>)
+        {
+            final NamedList<?> byId = (NamedList<?>) explained;
+            for (int i = 0; i < byId.size(); i++)
+            {
+                explain.put(byId.getName(i), byId.getVal(i));
+            }
+        }
+        else if (explained instanceof Map<?, ?>)
+        {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) explained).entrySet())
+            {
+                explain.put(String.valueOf(e.getKey()), e.getValue());
+            }
+        }
+        return explain;
+    }
+    
+    private static MatchResults toMatchResults(String id, int qTime, SolrDocumentList docs,
+                                               Map<String, Object> explain)
+    {
         final ImmutableList.Builder<Match> msBuilder = ImmutableList.builder();
         final float maxScore = (docs != null) ? docs.getMaxScore() : 0.0f;
         if (docs != null)
@@ -91,12 +207,13 @@ public class MatchableRecord implements Matchable
             {
                 float score = (Float) doc.getFieldValue("score");
                 SGRRecord match = SGRRecord.fromSolrDocument(doc);
-                String explained = explain.get(match.id);
-                msBuilder.add(new Match(match, score, explained));
+                final Object explained = explain.get(match.id);
+                msBuilder.add((explained instanceof NamedList<?>) ?
+                        new Match(match, score, (NamedList<?>) explained) :
+                        new Match(match, score, (String) explained));
             }
-         }
-        return new MatchResults(record.id, resp.getQTime(), 
-                                maxScore, msBuilder.build());
+        }
+        return new MatchResults(id, qTime, maxScore, msBuilder.build());
     }
     
     public static Matchable from(SGRRecord record)
@@ -0,0 +1,62 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+/**
+ * Coordinates workers in several processes that share one batch split into
+ * partitions. A worker claims a partition for a limited time and must renew
+ * the lease before it runs out; a partition whose lease has expired, e.g. 
+ * because its worker died, can be claimed by another worker, which resumes
+ * it from the partition's checkpointed results.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public interface PartitionLeases
+{
+    int nPartitions();
+    
+    /**
+     * @return a partition that is neither complete nor leased, now leased to
+     * <code>owner</code> for <code>leaseMillis</code>, or -1 if there is none
+     * at the moment.
+     */
+    int claim(String owner, long leaseMillis);
+    
+    /**
+     * @return false if <code>owner</code> no longer holds the lease, in which
+     * case it must stop working on the partition.
+     */
+    boolean renew(int partition, String owner, long leaseMillis);
+    
+    /**
+     * Mark a partition held by <code>owner</code> as finished.
+     */
+    void complete(int partition, String owner);
+    
+    /**
+     * Give up a lease so that another worker can claim the partition at once.
+     */
+    void release(int partition, String owner);
+    
+    boolean allComplete();
+}
@@ -0,0 +1,206 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs one worker's share of a batch that several processes match together.
+ * The input ids are hash partitioned; the worker repeatedly claims a 
+ * partition through {@link PartitionLeases}, matches the input items that 
+ * fall in it with a {@link BatchMatcher} and marks it complete. Each
+ * partition's results go to its own accumulator, which is its checkpoint: a
+ * partition reclaimed after its worker died is resumed from there.
+ * 
+ * Every worker reads the whole input and keeps only the items of the
+ * partition it holds, so the input must be iterable more than once and 
+ * present the same items to every worker.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class PartitionedBatchRun
+{
+    public static final long DEFAULT_LEASE_MILLIS = 60000;
+    
+    /**
+     * Opens and closes the accumulator holding one partition's results.
+     * Accumulators may be shared between partitions, e.g. one database 
+     * result set for the whole batch.
+     */
+    public interface Accumulators
+    {
+        BatchMatchResultAccumulator open(int partition);
+        void close(int partition, BatchMatchResultAccumulator accumulator);
+    }
+    
+    private final Iterable<? extends Matchable> input;
+    private final PartitionLeases leases;
+    private final Accumulators accumulators;
+    public final int nThreads;
+    public final String owner;
+    public final long leaseMillis;
+    
+    private int nPartitionsRun = 0;
+    
+    public PartitionedBatchRun(Iterable<? extends Matchable> input, PartitionLeases leases,
+                               Accumulators accumulators, int nThreads)
+    {
+        this(input, leases, accumulators, nThreads, defaultOwner(), DEFAULT_LEASE_MILLIS);
+    }
+    
+    public PartitionedBatchRun(Iterable<? extends Matchable> input, PartitionLeases leases,
+                               Accumulators accumulators, int nThreads, 
+                               String owner, long leaseMillis)
+    {
+        this.input = input;
+        this.leases = leases;
+        this.accumulators = accumulators;
+        this.nThreads = nThreads;
+        this.owner = owner;
+        this.leaseMillis = leaseMillis;
+    }
+    
+    /**
+     * @return an owner name unique to this process, e.g. 1234@host.
+     */
+    public static String defaultOwner()
+    {
+        return ManagementFactory.getRuntimeMXBean().getName();
+    }
+    
+    public static int partitionOf(String id, int nPartitions)
+    {
+        // Spread the bits of the hash so that runs of similar ids are 
+        // distributed evenly.
+        int h = id.hashCode() * 0x9E3779B9;
+        h ^= (h >>> 16);
+        return (h & Integer.MAX_VALUE) % nPartitions;
+    }
+    
+    /**
+     * Claim and match partitions until all of them are complete. While 
+     * other workers hold the remaining partitions this waits, taking over 
+     * any whose lease expires.
+     */
+    public void run() throws InterruptedException
+    {
+        final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sgr-lease-%d").build());
+        try
+        {
+            while (!leases.allComplete())
+            {
+                final int partition = leases.claim(owner, leaseMillis);
+                if (partition < 0)
+                {
+                    Thread.sleep(Math.max(100, leaseMillis / 4));
+                    continue;
+                }
+                runPartition(partition, renewer);
+            }
+        } finally
+        {
+            renewer.shutdownNow();
+        }
+    }
+    
+    private void runPartition(final int partition, ScheduledExecutorService renewer)
+    {
+        final boolean[] lost = new boolean[1];
+        final Runnable renew = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final boolean held;
+                try
+                {
+                    held = leases.renew(partition, owner, leaseMillis);
+                } catch (RuntimeException e)
+                {
+                    // Try again at the next period; the lease only lapses 
+                    // if renewing keeps failing.
+                    return;
+                }
+                synchronized (lost) { lost[0] |= !held; }
+            }
+        };
+        final long period = Math.max(1, leaseMillis / 3);
+        final ScheduledFuture<?> renewing = 
+            renewer.scheduleAtFixedRate(renew, period, period, TimeUnit.MILLISECONDS);
+        
+        final Predicate<Matchable> inPartition = new Predicate<Matchable>()
+        {
+            @Override
+            public boolean apply(Matchable item)
+            {
+                synchronized (lost) { if (lost[0]) return false; }
+                return partitionOf(item.getId(), leases.nPartitions()) == partition;
+            }
+        };
+        
+        boolean finished = false;
+        final BatchMatchResultAccumulator acc = accumulators.open(partition);
+        try
+        {
+            @SuppressWarnings("unchecked")
+            final Iterator<Matchable> items = 
+                Iterators.filter((Iterator<Matchable>) input.iterator(), inPartition);
+            new BatchMatcher(items, acc, nThreads).run();
+            finished = true;
+        } finally
+        {
+            renewing.cancel(false);
+            accumulators.close(partition, acc);
+            
+            final boolean wasLost;
+            synchronized (lost) { wasLost = lost[0]; }
+            if (finished && !wasLost)
+            {
+                leases.complete(partition, owner);
+                nPartitionsRun++;
+            }
+            else if (!wasLost)
+            {
+                leases.release(partition, owner);
+            }
+        }
+    }
+    
+    /**
+     * @return the number of partitions this worker has completed.
+     */
+    public int getPartitionsRun()
+    {
+        return nPartitionsRun;
+    }
+}
@@ -0,0 +1,235 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+/**
+ * A cheap first matching phase. A query template is filled in with the 
+ * values of the record being matched and run as an ordinary search; only
+ * when it finds candidates does the record go on to the expensive MLT 
+ * phase, which can optionally be restricted to those candidates.
+ * 
+ * In the template <code>${field}</code> stands for the record's values of 
+ * <code>field</code> and <code>${field:word}</code> for the first word of 
+ * each value, e.g. 
+ * <code>collector_number:${collector_number} AND collectors:${collectors:word}*</code>.
+ * Values are escaped; several values of a field become an OR group. Records
+ * lacking a field the template uses, and items that are not records, skip
+ * the prefilter and are always matched.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class Prefilter
+{
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}:]+)(:word)?\\}");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    
+    public final String template;
+    public final int maxCandidates;
+    public final boolean restrict;
+    
+    private final AtomicLong nChecked = new AtomicLong();
+    private final AtomicLong nUnfilterable = new AtomicLong();
+    private final AtomicLong nRejected = new AtomicLong();
+    private final AtomicLong nRestricted = new AtomicLong();
+    
+    /**
+     * @param maxCandidates the most candidates the MLT phase is restricted
+     * to; records with more candidates are matched unrestricted.
+     * @param restrict whether to restrict the MLT phase to the candidates.
+     */
+    public Prefilter(String template, int maxCandidates, boolean restrict)
+    {
+        this.template = template;
+        this.maxCandidates = Math.max(1, maxCandidates);
+        this.restrict = restrict;
+    }
+    
+    /**
+     * The result of the prefilter for one item.
+     */
+    static class Outcome
+    {
+        static final Outcome UNFILTERED = new Outcome(true, 0, null);
+        
+        final boolean candidates;
+        final int qTime;
+        final String filter;
+        
+        Outcome(boolean candidates, int qTime, String filter)
+        {
+            this.candidates = candidates;
+            this.qTime = qTime;
+            this.filter = filter;
+        }
+    }
+    
+    Outcome check(SolrServer server, Matchable item)
+    {
+        final String q = (item instanceof MatchableRecord) ? 
+                fill(((MatchableRecord) item).record) : null;
+        if (q == null)
+        {
+            nUnfilterable.incrementAndGet();
+            return Outcome.UNFILTERED;
+        }
+        
+        final SolrQuery query = new SolrQuery(q);
+        query.setFields("id");
+        query.setRows(restrict ? maxCandidates : 1);
+        
+        final QueryResponse resp;
+        try 
+        { 
+            resp = server.query(query); 
+        } catch (SolrServerException e) 
+        {
+            throw new RuntimeException(e);
+        }
+        nChecked.incrementAndGet();
+        
+        final SolrDocumentList docs = resp.getResults();
+        if (docs == null || docs.getNumFound() == 0)
+        {
+            nRejected.incrementAndGet();
+            return new Outcome(false, resp.getQTime(), null);
+        }
+        if (!restrict || docs.getNumFound() > maxCandidates)
+        {
+            return new Outcome(true, resp.getQTime(), null);
+        }
+        
+        final List<String> ids = Lists.newArrayListWithCapacity(docs.size());
+        for (SolrDocument doc : docs)
+        {
+            ids.add(ClientUtils.escapeQueryChars(String.valueOf(doc.getFieldValue("id"))));
+        }
+        nRestricted.incrementAndGet();
+        return new Outcome(true, resp.getQTime(), "id:(" + Joiner.on(" OR ").join(ids) + ")");
+    }
+    
+    /**
+     * @return the template filled in with <code>record</code>'s values, or
+     * null if the record lacks a field the template uses.
+     */
+    String fill(SGRRecord record)
+    {
+        final Matcher m = PLACEHOLDER.matcher(template);
+        final StringBuffer sb = new StringBuffer();
+        while (m.find())
+        {
+            final List<String> terms = Lists.newArrayList();
+            final int f = record.fieldIndex(m.group(1));
+            for (int i = 0; f >= 0 && i < record.nValues(f); i++)
+            {
+                final String value = record.value(f, i);
+                String term = value;
+                if (m.group(2) != null)
+                {
+                    final Matcher word = WORD.matcher(value);
+                    if (!word.find()) continue;
+                    term = word.group();
+                }
+                terms.add(ClientUtils.escapeQueryChars(term));
+            }
+            if (terms.isEmpty()) return null;
+            
+            final String replacement = (terms.size() == 1) ? 
+                    terms.get(0) : "(" + Joiner.on(" OR ").join(terms) + ")";
+            m.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+    
+    /**
+     * @return <code>query</code> with this prefilter's settings added, for 
+     * fingerprinting the configuration as a whole.
+     */
+    SolrQuery describe(SolrQuery query)
+    {
+        final SolrQuery described = query.getCopy();
+        described.set("sgr.prefilter.q", template);
+        described.set("sgr.prefilter.restrict", restrict);
+        described.set("sgr.prefilter.maxCandidates", maxCandidates);
+        return described;
+    }
+    
+    /**
+     * @return the number of items the prefilter query was run for.
+     */
+    public long getChecked()
+    {
+        return nChecked.get();
+    }
+    
+    /**
+     * @return the number of items that skipped the prefilter.
+     */
+    public long getUnfilterable()
+    {
+        return nUnfilterable.get();
+    }
+    
+    /**
+     * @return the number of items found to have no candidates, which were
+     * not sent to the MLT phase.
+     */
+    public long getRejected()
+    {
+        return nRejected.get();
+    }
+    
+    /**
+     * @return the number of items whose MLT phase was restricted to their
+     * candidates.
+     */
+    public long getRestricted()
+    {
+        return nRestricted.get();
+    }
+    
+    /**
+     * @return the fraction of checked items that had candidates.
+     */
+    public double getPassRate()
+    {
+        final long checked = nChecked.get();
+        return (checked > 0) ? (double) (checked - nRejected.get()) / checked : 0.0;
+    }
+}
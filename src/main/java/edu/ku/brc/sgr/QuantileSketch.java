@@ -0,0 +1,382 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A fixed size, mergeable sketch of a stream of values from which quantiles
+ * can be estimated, after Karnin, Lang and Liberty's KLL sketch. Values are
+ * kept in levels of compactors; level h holds items that each stand for 
+ * 2^h values. When the sketch is over capacity the lowest full level is 
+ * sorted and every other item, starting at random, is promoted to the level
+ * above. About 3k items are retained however many values are added, and 
+ * with the default k of 200 estimated ranks are typically within about 1%.
+ * 
+ * Sketches of separate streams can be merged into a sketch of their union,
+ * and are saved and restored with {@link #toBytes()} and 
+ * {@link #fromBytes(byte[])}.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class QuantileSketch
+{
+    public static final int DEFAULT_K = 200;
+    
+    private static final int MIN_LEVEL_CAPACITY = 8;
+    private static final double LEVEL_SHRINK = 2.0 / 3.0;
+    private static final byte FORMAT = 1;
+    
+    public final int k;
+    
+    private final List<Level> levels = Lists.newArrayList();
+    private final Random coin = new Random();
+    private long n = 0;
+    private int retained = 0;
+    private float min = Float.NaN;
+    private float max = Float.NaN;
+    
+    public QuantileSketch()
+    {
+        this(DEFAULT_K);
+    }
+    
+    public QuantileSketch(int k)
+    {
+        if (k < MIN_LEVEL_CAPACITY) 
+        {
+            throw new IllegalArgumentException("k must be at least " + MIN_LEVEL_CAPACITY);
+        }
+        this.k = k;
+        levels.add(new Level());
+    }
+    
+    /**
+     * Add a value. NaNs are ignored.
+     */
+    synchronized public void update(float value)
+    {
+        if (Float.isNaN(value)) return;
+        
+        min = (n == 0) ? value : Math.min(min, value);
+        max = (n == 0) ? value : Math.max(max, value);
+        n++;
+        levels.get(0).add(value);
+        retained++;
+        compress();
+    }
+    
+    /**
+     * Add all the values summarized by <code>other</code>, which is left
+     * unchanged.
+     */
+    public void merge(QuantileSketch other)
+    {
+        final QuantileSketch copy = other.copy();
+        synchronized (this)
+        {
+            if (copy.n == 0) return;
+            
+            min = (n == 0) ? copy.min : Math.min(min, copy.min);
+            max = (n == 0) ? copy.max : Math.max(max, copy.max);
+            n += copy.n;
+            while (levels.size() < copy.levels.size()) levels.add(new Level());
+            for (int h = 0; h < copy.levels.size(); h++)
+            {
+                final Level from = copy.levels.get(h);
+                for (int i = 0; i < from.size; i++) levels.get(h).add(from.items[i]);
+                retained += from.size;
+            }
+            compress();
+        }
+    }
+    
+    synchronized public QuantileSketch copy()
+    {
+        final QuantileSketch copy = new QuantileSketch(k);
+        copy.levels.clear();
+        for (Level level : levels) copy.levels.add(level.copy());
+        copy.n = n;
+        copy.retained = retained;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+    
+    /**
+     * @return the number of values added.
+     */
+    synchronized public long getN()
+    {
+        return n;
+    }
+    
+    /**
+     * @return the number of items the sketch holds.
+     */
+    synchronized public int getRetained()
+    {
+        return retained;
+    }
+    
+    /**
+     * @return the smallest value added, or NaN if none have been.
+     */
+    synchronized public float getMin()
+    {
+        return min;
+    }
+    
+    /**
+     * @return the largest value added, or NaN if none have been.
+     */
+    synchronized public float getMax()
+    {
+        return max;
+    }
+    
+    /**
+     * @return an estimate of the value below which a fraction <code>q</code>
+     * of the values fall, or NaN if the sketch is empty.
+     */
+    public float getQuantile(double q)
+    {
+        return getQuantiles(new double[] { q })[0];
+    }
+    
+    /**
+     * Estimate several quantiles at once, sorting the sketch only once.
+     */
+    synchronized public float[] getQuantiles(double[] qs)
+    {
+        final float[] quantiles = new float[qs.length];
+        if (n == 0)
+        {
+            Arrays.fill(quantiles, Float.NaN);
+            return quantiles;
+        }
+        
+        final long[] sorted = sortedItems();
+        for (int j = 0; j < qs.length; j++)
+        {
+            if (qs[j] <= 0.0) quantiles[j] = min;
+            else if (qs[j] >= 1.0) quantiles[j] = max;
+            else
+            {
+                final double target = qs[j] * n;
+                long weight = 0;
+                int i = 0;
+                while (i < sorted.length - 1 && (weight += weightOf(sorted[i])) < target) i++;
+                quantiles[j] = valueOf(sorted[i]);
+            }
+        }
+        return quantiles;
+    }
+    
+    /**
+     * @return an estimate of the fraction of the values that are less than
+     * or equal to <code>value</code>.
+     */
+    synchronized public double getRank(float value)
+    {
+        if (n == 0) return Double.NaN;
+        
+        long weight = 0;
+        for (int h = 0; h < levels.size(); h++)
+        {
+            final Level level = levels.get(h);
+            for (int i = 0; i < level.size; i++)
+            {
+                if (level.items[i] <= value) weight += 1L << h;
+            }
+        }
+        return (double) weight / n;
+    }
+    
+    synchronized public byte[] toBytes()
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + 4 * retained);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeByte(FORMAT);
+            out.writeInt(k);
+            out.writeLong(n);
+            out.writeFloat(min);
+            out.writeFloat(max);
+            out.writeInt(levels.size());
+            for (Level level : levels)
+            {
+                out.writeInt(level.size);
+                for (int i = 0; i < level.size; i++) out.writeFloat(level.items[i]);
+            }
+            out.close();
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    public static QuantileSketch fromBytes(byte[] bytes)
+    {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try
+        {
+            final byte format = in.readByte();
+            if (format != FORMAT)
+            {
+                throw new IllegalArgumentException("unknown sketch format: " + format);
+            }
+            final QuantileSketch sketch = new QuantileSketch(in.readInt());
+            sketch.n = in.readLong();
+            sketch.min = in.readFloat();
+            sketch.max = in.readFloat();
+            sketch.levels.clear();
+            final int nLevels = in.readInt();
+            for (int h = 0; h < nLevels; h++)
+            {
+                final Level level = new Level();
+                final int size = in.readInt();
+                for (int i = 0; i < size; i++) level.add(in.readFloat());
+                sketch.levels.add(level);
+                sketch.retained += size;
+            }
+            return sketch;
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    @Override
+    public String toString()
+    {
+        final float[] q = getQuantiles(new double[] { 0.5, 0.9, 0.99 });
+        return "n=" + getN() + " min=" + getMin() + " p50=" + q[0] + " p90=" + q[1] + 
+               " p99=" + q[2] + " max=" + getMax();
+    }
+    
+    private int levelCapacity(int h)
+    {
+        final int depth = levels.size() - 1 - h;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(LEVEL_SHRINK, depth)));
+    }
+    
+    private int capacity()
+    {
+        int capacity = 0;
+        for (int h = 0; h < levels.size(); h++) capacity += levelCapacity(h);
+        return capacity;
+    }
+    
+    private void compress()
+    {
+        while (retained > capacity())
+        {
+            int h = 0;
+            while (levels.get(h).size < levelCapacity(h)) h++;
+            compact(h);
+        }
+    }
+    
+    private void compact(int h)
+    {
+        if (h + 1 == levels.size()) levels.add(new Level());
+        final Level level = levels.get(h);
+        final Level above = levels.get(h + 1);
+        
+        // With an odd number of items the smallest stays behind.
+        Arrays.sort(level.items, 0, level.size);
+        final int keep = level.size % 2;
+        for (int i = keep + (coin.nextBoolean() ? 1 : 0); i < level.size; i += 2) 
+        {
+            above.add(level.items[i]);
+        }
+        retained -= (level.size - keep) / 2;
+        level.size = keep;
+    }
+    
+    /**
+     * All items as longs that sort in order of value: the high 32 bits are
+     * the float bits made to compare as signed ints, the low bits the level.
+     */
+    private long[] sortedItems()
+    {
+        final long[] sorted = new long[retained];
+        int j = 0;
+        for (int h = 0; h < levels.size(); h++)
+        {
+            final Level level = levels.get(h);
+            for (int i = 0; i < level.size; i++)
+            {
+                int bits = Float.floatToIntBits(level.items[i]);
+                bits ^= (bits >> 31) & 0x7fffffff;
+                sorted[j++] = ((long) bits << 32) | h;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+    
+    private static float valueOf(long item)
+    {
+        int bits = (int) (item >> 32);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return Float.intBitsToFloat(bits);
+    }
+    
+    private static long weightOf(long item)
+    {
+        return 1L << (int) (item & 0xff);
+    }
+    
+    private static class Level
+    {
+        float[] items = new float[MIN_LEVEL_CAPACITY];
+        int size = 0;
+        
+        void add(float item)
+        {
+            if (size == items.length) items = Arrays.copyOf(items, 2 * size);
+            items[size++] = item;
+        }
+        
+        Level copy()
+        {
+            final Level copy = new Level();
+            copy.items = Arrays.copyOf(items, Math.max(size, MIN_LEVEL_CAPACITY));
+            copy.size = size;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.util.NamedList;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Sends each request to the replica with the fewest requests outstanding,
+ * so a slow or busy replica automatically receives less of the load. Ties
+ * go round robin. If a replica fails the request is retried on the others,
+ * least loaded first.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ReplicatedSolrServer extends SolrServer
+{
+    private static final long serialVersionUID = 1L;
+    
+    private final ImmutableList<SolrServer> replicas;
+    private final AtomicInteger[] outstanding;
+    private final AtomicInteger next = new AtomicInteger();
+    
+    public ReplicatedSolrServer(List<? extends SolrServer> replicas)
+    {
+        if (replicas.isEmpty()) throw new IllegalArgumentException("no replicas given");
+        this.replicas = ImmutableList.copyOf(replicas);
+        outstanding = new AtomicInteger[replicas.size()];
+        for (int i = 0; i < outstanding.length; i++) outstanding[i] = new AtomicInteger();
+    }
+    
+    @Override
+    public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException
+    {
+        final boolean[] tried = new boolean[outstanding.length];
+        Exception failure = null;
+        for (int attempt = 0; attempt < outstanding.length; attempt++)
+        {
+            final int i = leastOutstanding(tried);
+            tried[i] = true;
+            outstanding[i].incrementAndGet();
+            try
+            {
+                return replicas.get(i).request(request);
+            } catch (SolrServerException e)
+            {
+                failure = e;
+            } catch (IOException e)
+            {
+                failure = e;
+            } finally
+            {
+                outstanding[i].decrementAndGet();
+            }
+        }
+        if (failure instanceof IOException) throw (IOException) failure;
+        throw (SolrServerException) failure;
+    }
+    
+    private int leastOutstanding(boolean[] exclude)
+    {
+        final int n = outstanding.length;
+        final int start = (next.getAndIncrement() & Integer.MAX_VALUE) % n;
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int k = 0; k < n; k++)
+        {
+            final int i = (start + k) % n;
+            if (exclude[i]) continue;
+            final int count = outstanding[i].get();
+            if (count < bestCount)
+            {
+                best = i;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+    
+    public ImmutableList<SolrServer> getReplicas()
+    {
+        return replicas;
+    }
+    
+    /**
+     * @return the number of requests outstanding on each replica.
+     */
+    public int[] getOutstanding()
+    {
+        final int[] counts = new int[outstanding.length];
+        for (int i = 0; i < counts.length; i++) counts[i] = outstanding[i].get();
+        return counts;
+    }
+}
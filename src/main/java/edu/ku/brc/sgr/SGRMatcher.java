@@ -17,15 +17,38 @@
  */
 package edu.ku.brc.sgr;
 
+import java.io.File;
 import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
 import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.MoreLikeThisParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.CoreDescriptor;
+import org.apache.solr.core.SolrConfig;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.servlet.SolrRequestParsers;
 
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * @author ben
  *
@@ -36,16 +59,64 @@ import org.apache.solr.servlet.SolrRequestParsers;
  */
 public class SGRMatcher
 {
-    private final CommonsHttpSolrServer server;
+    public static final String EXPLAIN_STRUCTURED = "debug.explain.structured";
+    
+    private final SolrServer server;
+    private final CoreContainer embeddedCores;
     private final SolrQuery baseQuery;
     
     public final String serverUrl;
+    public final int batchSize;
+    public final int maxInFlight;
+    
+    private volatile boolean multiDocSupported = true;
+    
+    private ListeningExecutorService requestExecutor = null;
+    
+    private final MatchResultsCache cache;
+    private final String queryFingerprint;
+    private final String serverFingerprint;
+    
+    private final Prefilter prefilter;
+    private final AtomicLong nMltQueries = new AtomicLong();
+    private final AtomicLong nMltHits = new AtomicLong();
 
-    private SGRMatcher(final String url, final SolrQuery baseQuery) throws MalformedURLException 
+    private SGRMatcher(final Factory factory, final SolrQuery baseQuery, 
+                       final SolrServer server, final CoreContainer embeddedCores) 
     {
-        serverUrl = url;  
-        server = new CommonsHttpSolrServer(url);
+        serverUrl = factory.getLocation();
         this.baseQuery = baseQuery;
+        this.server = server;
+        this.embeddedCores = embeddedCores;
+        this.batchSize = Math.max(1, factory.batchSize);
+        this.maxInFlight = Math.max(1, factory.maxInFlight);
+        
+        if (server instanceof CommonsHttpSolrServer)
+        {
+            final CommonsHttpSolrServer httpServer = (CommonsHttpSolrServer) server;
+            httpServer.setDefaultMaxConnectionsPerHost(this.maxInFlight);
+            httpServer.setMaxTotalConnections(this.maxInFlight);
+        }
+        
+        cache = (factory.cacheSize > 0) ? 
+                new MatchResultsCache(factory.cacheSize, factory.cacheTtlMillis, 
+                        (factory.cacheDirectory != null) ? new File(factory.cacheDirectory) : null)
+                : null;
+        prefilter = (factory.prefilterQuery != null) ? 
+                new Prefilter(factory.prefilterQuery, factory.prefilterMaxCandidates, 
+                              factory.prefilterRestrict) 
+                : null;
+        queryFingerprint = Fingerprints.of(
+                (prefilter != null) ? prefilter.describe(baseQuery) : baseQuery);
+        serverFingerprint = Fingerprints.of((embeddedCores != null) ? 
+                "embedded:" + new File(factory.embeddedSolrHome).getAbsolutePath() + 
+                "#" + factory.embeddedCoreName 
+                : serverUrl);
+    }
+    
+    public boolean isEmbedded()
+    {
+        return embeddedCores != null;
     }
     
     public static Factory getFactory() { return new Factory(); }
@@ -59,9 +130,248 @@ public class SGRMatcher
 
     public MatchResults match(Matchable matchable, Integer nRows)
     {
+        final String key = cacheKey(matchable, nRows);
+        if (key != null)
+        {
+            final MatchResults cached = cache.get(key, matchable.getId());
+            if (cached != null) return cached;
+        }
+        
         SolrQuery query = getBaseQuery();
         if (nRows != null) query.setRows(nRows);
-        return matchable.doMatch(server, query);
+        final MatchResults results = matchOne(matchable, query);
+        
+        if (key != null) cache.put(key, results);
+        return results;
+    }
+    
+    /**
+     * Match one item, running the prefilter phase first if there is one.
+     */
+    private MatchResults matchOne(Matchable matchable, SolrQuery query)
+    {
+        if (prefilter == null) return mlt(matchable, query);
+        
+        final Prefilter.Outcome outcome = prefilter.check(server, matchable);
+        if (!outcome.candidates)
+        {
+            return new MatchResults(matchable.getId(), outcome.qTime, 0.0f, 
+                                    ImmutableList.<Match>of());
+        }
+        if (outcome.filter == null) return mlt(matchable, query);
+        
+        final SolrQuery restricted = query.getCopy();
+        restricted.addFilterQuery(outcome.filter);
+        return mlt(matchable, restricted);
+    }
+    
+    private MatchResults mlt(Matchable matchable, SolrQuery query)
+    {
+        return counted(matchable.doMatch(server, query));
+    }
+    
+    private MatchResults counted(MatchResults results)
+    {
+        nMltQueries.incrementAndGet();
+        if (results.size() > 0) nMltHits.incrementAndGet();
+        return results;
+    }
+    
+    /**
+     * @return the key of <code>matchable</code>'s results in the cache, or 
+     * null if they cannot be cached. Results depend on the servers as well
+     * as the query, since a cache directory may be shared by matchers of 
+     * different indexes.
+     */
+    String cacheKey(Matchable matchable, Integer nRows)
+    {
+        if (cache == null) return null;
+        final String content = Fingerprints.of(matchable, false);
+        if (content == null) return null;
+        return content + ":" + queryFingerprint + ":" + serverFingerprint 
+            + ((nRows != null) ? ":" + nRows : "");
+    }
+    
+    /**
+     * @return the result cache, or null if caching is not enabled.
+     */
+    public MatchResultsCache getCache()
+    {
+        return cache;
+    }
+
+    public ImmutableList<MatchResults> match(List<? extends Matchable> matchables)
+    {
+        return match(matchables, null);
+    }
+
+    /**
+     * Match several items, sending up to {@link #batchSize} supplied records
+     * in each request. Results are returned in the same order as the input.
+     * Items that cannot be batched are matched one request at a time.
+     */
+    public ImmutableList<MatchResults> match(List<? extends Matchable> matchables, Integer nRows)
+    {
+        SolrQuery query = getBaseQuery();
+        if (nRows != null) query.setRows(nRows);
+        
+        final MatchResults[] results = new MatchResults[matchables.size()];
+        final String[] keys = new String[results.length];
+        final List<MatchableRecord> records = Lists.newArrayList();
+        final List<Integer> positions = Lists.newArrayList();
+        
+        for (int i = 0; i < results.length; i++)
+        {
+            final Matchable matchable = matchables.get(i);
+            keys[i] = cacheKey(matchable, nRows);
+            if (keys[i] != null)
+            {
+                results[i] = cache.get(keys[i], matchable.getId());
+                if (results[i] != null) continue;
+            }
+            
+            final Prefilter.Outcome outcome = (prefilter != null) ? 
+                    prefilter.check(server, matchable) : Prefilter.Outcome.UNFILTERED;
+            if (!outcome.candidates)
+            {
+                results[i] = new MatchResults(matchable.getId(), outcome.qTime, 0.0f, 
+                                              ImmutableList.<Match>of());
+            }
+            else if (batchSize > 1 && multiDocSupported && outcome.filter == null 
+                    && matchable instanceof MatchableRecord)
+            {
+                records.add((MatchableRecord) matchable);
+                positions.add(i);
+            }
+            else if (outcome.filter != null)
+            {
+                final SolrQuery restricted = query.getCopy();
+                restricted.addFilterQuery(outcome.filter);
+                results[i] = mlt(matchable, restricted);
+            }
+            else
+            {
+                results[i] = mlt(matchable, query);
+            }
+        }
+        
+        int next = 0;
+        for (List<MatchableRecord> chunk : Lists.partition(records, batchSize))
+        {
+            List<MatchResults> chunkResults = null;
+            if (multiDocSupported)
+            {
+                chunkResults = MatchableRecord.doMatch(server, query, chunk);
+                if (chunkResults == null) multiDocSupported = false;
+            }
+            for (int i = 0; i < chunk.size(); i++)
+            {
+                results[positions.get(next++)] = (chunkResults != null) ? 
+                        counted(chunkResults.get(i)) : mlt(chunk.get(i), query);
+            }
+        }
+        
+        for (int i = 0; i < results.length; i++)
+        {
+            if (keys[i] != null) cache.put(keys[i], results[i]);
+        }
+        return ImmutableList.copyOf(results);
+    }
+    
+    /**
+     * @return the prefilter phase, or null if there is none.
+     */
+    public Prefilter getPrefilter()
+    {
+        return prefilter;
+    }
+    
+    /**
+     * @return the number of items matched by the MLT phase.
+     */
+    public long getMltQueries()
+    {
+        return nMltQueries.get();
+    }
+    
+    /**
+     * @return the fraction of MLT phase matches that found any match.
+     */
+    public double getMltHitRate()
+    {
+        final long n = nMltQueries.get();
+        return (n > 0) ? (double) nMltHits.get() / n : 0.0;
+    }
+    
+    public ListenableFuture<MatchResults> matchAsync(Matchable matchable)
+    {
+        return matchAsync(matchable, null);
+    }
+
+    /**
+     * Start matching <code>matchable</code> without waiting for the response.
+     * This never blocks: requests are queued and at most {@link #maxInFlight}
+     * of them are sent at once. SolrJ 3.4 has only blocking clients, so each
+     * request being sent occupies one of a fixed pool of maxInFlight threads;
+     * callers that produce requests faster than they complete must limit how
+     * many they leave outstanding, as {@link BatchMatcher} does.
+     */
+    public ListenableFuture<MatchResults> matchAsync(final Matchable matchable, 
+                                                     final Integer nRows)
+    {
+        return submit(new Callable<MatchResults>()
+        {
+            @Override
+            public MatchResults call() { return match(matchable, nRows); }
+        });
+    }
+
+    public ListenableFuture<ImmutableList<MatchResults>> matchAsync(
+            List<? extends Matchable> matchables)
+    {
+        return matchAsync(matchables, null);
+    }
+
+    public ListenableFuture<ImmutableList<MatchResults>> matchAsync(
+            final List<? extends Matchable> matchables, final Integer nRows)
+    {
+        return submit(new Callable<ImmutableList<MatchResults>>()
+        {
+            @Override
+            public ImmutableList<MatchResults> call() { return match(matchables, nRows); }
+        });
+    }
+    
+    private <T> ListenableFuture<T> submit(Callable<T> request)
+    {
+        return getRequestExecutor().submit(request);
+    }
+    
+    synchronized private ListeningExecutorService getRequestExecutor()
+    {
+        if (requestExecutor == null)
+        {
+            requestExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+                    maxInFlight,
+                    new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("sgr-request-%d")
+                        .build()));
+        }
+        return requestExecutor;
+    }
+    
+    /**
+     * Release the threads used by {@link #matchAsync(Matchable)} and by a
+     * sharded server, and shut down the embedded SOLR core, if any. Requests
+     * already in flight are allowed to finish.
+     */
+    synchronized public void close()
+    {
+        if (requestExecutor != null) requestExecutor.shutdown();
+        requestExecutor = null;
+        if (embeddedCores != null) embeddedCores.shutdown();
+        if (server instanceof ShardedSolrServer) ((ShardedSolrServer) server).close();
     }
     
     public boolean sameQueryAs(String query)
@@ -69,6 +379,92 @@ public class SGRMatcher
         SolrParams params = SolrRequestParsers.parseQueryString(query);
         return EquateSolrParams.equals(getBaseQuery(), params);
     }
+
+    /**
+     * @return the {@link Fingerprints} fingerprint of the base query,
+     * including the prefilter settings if there is a prefilter. Matchers with
+     * the same fingerprint against the same server give the same results.
+     */
+    public String getQueryFingerprint()
+    {
+        return queryFingerprint;
+    }
+    
+    /**
+     * One SOLR server of a deployment with several. All endpoints given to a
+     * factory are either replicas of the same index or shards of one index.
+     */
+    public static class Endpoint
+    {
+        public enum Role { REPLICA, SHARD }
+        
+        public final String url;
+        public final SolrServer server;
+        public final Role role;
+        
+        private Endpoint(String url, SolrServer server, Role role)
+        {
+            this.url = url;
+            this.server = server;
+            this.role = role;
+        }
+        
+        public static Endpoint replica(String url) { return new Endpoint(url, null, Role.REPLICA); }
+        
+        public static Endpoint shard(String url) { return new Endpoint(url, null, Role.SHARD); }
+        
+        /**
+         * An endpoint served by an existing server, e.g. an embedded one.
+         */
+        public static Endpoint of(SolrServer server, Role role) 
+        { 
+            return new Endpoint(null, server, role); 
+        }
+        
+        static boolean isEndpoint(String s)
+        {
+            for (Role role : Role.values())
+            {
+                if (s.startsWith(prefix(role))) return true;
+            }
+            return false;
+        }
+        
+        /**
+         * @return the endpoint written as <code>role:url</code>.
+         */
+        static Endpoint parse(String s)
+        {
+            for (Role role : Role.values())
+            {
+                if (s.startsWith(prefix(role)))
+                {
+                    return new Endpoint(s.substring(prefix(role).length()), null, role);
+                }
+            }
+            throw new IllegalArgumentException("not an endpoint: " + s);
+        }
+        
+        private static String prefix(Role role)
+        {
+            return role.name().toLowerCase(Locale.ROOT) + ":";
+        }
+        
+        SolrServer open(int maxConnections) throws MalformedURLException
+        {
+            if (server != null) return server;
+            final CommonsHttpSolrServer httpServer = new CommonsHttpSolrServer(url);
+            httpServer.setDefaultMaxConnectionsPerHost(maxConnections);
+            httpServer.setMaxTotalConnections(maxConnections);
+            return httpServer;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return prefix(role) + ((url != null) ? url : server.toString());
+        }
+    }
     
     public static class Factory {
         public String serverUrl = "http://localhost:8983/solr";
@@ -78,11 +474,76 @@ public class SGRMatcher
         public boolean boostInterestingTerms = true;
         public boolean docSupplied = false;
         public boolean debugQuery = false;
+        public boolean structuredExplain = false;
         public String similarityFields = 
             "collectors,collector_number,location,date_collected,date_split,scientific_name"; 
         public String returnedFields = "*,score";
         public String queryFields = "";
         public String filterQuery = "";
+        public int batchSize = 1;
+        public int maxInFlight = 64;
+        
+        /**
+         * When set, match in process against the SOLR home directory at this
+         * path instead of over HTTP. The directory holds either a solr.xml
+         * naming its cores or a single core's conf and data directories.
+         */
+        public String embeddedSolrHome = null;
+        public String embeddedCoreName = "";
+        
+        /**
+         * Cache up to this many results keyed by record content, query and
+         * servers, for at most cacheTtlMillis. Zero disables the cache. When
+         * cacheDirectory is set results are also kept there across runs.
+         */
+        public int cacheSize = 0;
+        public long cacheTtlMillis = 24L * 60 * 60 * 1000;
+        public String cacheDirectory = null;
+        
+        /**
+         * When not empty, match against these servers instead of serverUrl.
+         * Replicas share the load by least outstanding requests; shards are
+         * all queried and their results merged into the top nRows by score.
+         */
+        public List<Endpoint> endpoints = Lists.newArrayList();
+        
+        /**
+         * @return serverUrl, or if there are endpoints a comma separated list
+         * of them in the form <code>replica:url</code> or <code>shard:url</code>.
+         * This is how the servers of a match configuration are stored.
+         */
+        public String getLocation()
+        {
+            return endpoints.isEmpty() ? serverUrl : Joiner.on(',').join(endpoints);
+        }
+        
+        /**
+         * Set serverUrl or the endpoints from a location as returned by 
+         * {@link #getLocation()}. Only endpoints with a URL can be restored.
+         */
+        public void setLocation(String location)
+        {
+            endpoints = Lists.newArrayList();
+            if (!Endpoint.isEndpoint(location))
+            {
+                serverUrl = location;
+                return;
+            }
+            for (String e : Splitter.on(',').trimResults().omitEmptyStrings().split(location))
+            {
+                endpoints.add(Endpoint.parse(e));
+            }
+        }
+        
+        /**
+         * When set, a cheap query run before each MLT query; items for which
+         * it finds nothing are not MLT matched. See {@link Prefilter} for the
+         * template syntax. With prefilterRestrict the MLT query is limited to
+         * the candidates found, if there are at most prefilterMaxCandidates.
+         */
+        public String prefilterQuery = null;
+        public boolean prefilterRestrict = false;
+        public int prefilterMaxCandidates = 100;
         
         public SGRMatcher build() throws MalformedURLException {
             SolrQuery baseQuery = new SolrQuery();
@@ -98,8 +559,72 @@ public class SGRMatcher
             baseQuery.set(MoreLikeThisParams.PRESERVE_FIELDS, true);
             baseQuery.set(CommonParams.FQ, filterQuery);
             baseQuery.set(CommonParams.DEBUG_QUERY, debugQuery);
+            if (debugQuery && structuredExplain)
+            {
+                baseQuery.set(EXPLAIN_STRUCTURED, true);
+            }
+            
+            if (!endpoints.isEmpty())
+            {
+                return new SGRMatcher(this, baseQuery, openEndpoints(baseQuery), null);
+            }
+            if (embeddedSolrHome != null)
+            {
+                final CoreContainer cores = openCores();
+                return new SGRMatcher(this, baseQuery, 
+                                      new EmbeddedSolrServer(cores, embeddedCoreName), cores);
+            }
+            return new SGRMatcher(this, baseQuery, new CommonsHttpSolrServer(serverUrl), null);
+        }
+        
+        private SolrServer openEndpoints(SolrQuery baseQuery) throws MalformedURLException
+        {
+            final Endpoint.Role role = endpoints.get(0).role;
+            final List<SolrServer> servers = Lists.newArrayList();
+            for (Endpoint endpoint : endpoints)
+            {
+                if (endpoint.role != role)
+                {
+                    throw new IllegalArgumentException(
+                            "endpoints must be all replicas or all shards: " + endpoints);
+                }
+                servers.add(endpoint.open(Math.max(1, maxInFlight)));
+            }
             
-            return new SGRMatcher(serverUrl, baseQuery);
+            if (role == Endpoint.Role.REPLICA) return new ReplicatedSolrServer(servers);
+            
+            // Merging shard results needs the scores.
+            final String fl = baseQuery.get(CommonParams.FL);
+            if (!Arrays.asList(fl.split("\\s*,\\s*")).contains("score"))
+            {
+                baseQuery.set(CommonParams.FL, fl + ",score");
+            }
+            return new ShardedSolrServer(servers);
+        }
+        
+        private CoreContainer openCores()
+        {
+            try
+            {
+                final File solrXml = new File(embeddedSolrHome, "solr.xml");
+                if (solrXml.exists())
+                {
+                    return new CoreContainer(embeddedSolrHome, solrXml);
+                }
+                
+                final CoreContainer cores = new CoreContainer();
+                final SolrConfig config = new SolrConfig(embeddedSolrHome, "solrconfig.xml", null);
+                final IndexSchema schema = new IndexSchema(config, "schema.xml", null);
+                final CoreDescriptor descriptor = 
+                    new CoreDescriptor(cores, embeddedCoreName, embeddedSolrHome);
+                final SolrCore core = 
+                    new SolrCore(embeddedCoreName, null, config, schema, descriptor);
+                cores.register(embeddedCoreName, core, false);
+                return cores;
+            } catch (Exception e)
+            {
+                throw new RuntimeException("could not open SOLR home: " + embeddedSolrHome, e);
+            }
         }
     }    
 }
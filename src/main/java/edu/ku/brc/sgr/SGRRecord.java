@@ -16,15 +16,32 @@
  */
 package edu.ku.brc.sgr;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.solr.common.SolrDocument;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 
 /**
+ * A record is stored as the {@link FieldDictionary#SHARED} codes of its 
+ * fields, in order, together with one flat array of all the values. Nothing
+ * else is kept: the field and value accessors read the arrays, and the 
+ * multimap, field set and value lists are built afresh on each call. Code
+ * that inspects many records should use the indexed accessors, e.g.
+ * {@link #fieldIndex(String)} and {@link #value(int, int)}, which allocate
+ * nothing.
+ * 
+ * Values of fields registered with {@link #internValuesOf(String...)} are
+ * interned so that records repeating the same value share one String.
+ * 
  * @author ben
  * 
  * @code_status Alpha
@@ -36,27 +53,135 @@ public class SGRRecord
 {
     public final String id;
     
-    private final ImmutableListMultimap<String, String> data;
+    private final int[] fields;
+    private final int[] starts;
+    private final String[] values;
+    
+    private static final Interner<String> valueInterner = Interners.newWeakInterner();
+    private static volatile boolean[] internedFields = new boolean[0];
 
     public SGRRecord(String id, Multimap<String, String> data)
     {
         this.id = id;
-        this.data = ImmutableListMultimap.copyOf(data);
+        final Map<String, Collection<String>> byField = data.asMap();
+        fields = new int[byField.size()];
+        starts = new int[byField.size() + 1];
+        values = new String[data.size()];
+        
+        int f = 0;
+        int v = 0;
+        for (Map.Entry<String, Collection<String>> e : byField.entrySet())
+        {
+            fields[f] = FieldDictionary.SHARED.codeOf(e.getKey());
+            starts[f] = v;
+            for (String value : e.getValue()) { values[v++] = intern(fields[f], value); }
+            f++;
+        }
+        starts[f] = v;
+    }
+    
+    private SGRRecord(String id, int[] fields, int[] starts, String[] values)
+    {
+        this.id = id;
+        this.fields = fields;
+        this.starts = starts;
+        this.values = values;
+    }
+    
+    /**
+     * Intern the values of the given fields in every record created from 
+     * now on. Worthwhile for fields such as collectors or location whose 
+     * values repeat across many records.
+     */
+    synchronized public static void internValuesOf(String... fieldNames)
+    {
+        boolean[] interned = internedFields;
+        for (String field : fieldNames)
+        {
+            final int code = FieldDictionary.SHARED.codeOf(field);
+            if (code >= interned.length) interned = Arrays.copyOf(interned, code + 1);
+            interned[code] = true;
+        }
+        internedFields = interned;
+    }
+    
+    private static String intern(int field, String value)
+    {
+        final boolean[] interned = internedFields;
+        return (field < interned.length && interned[field]) ? valueInterner.intern(value) : value;
     }
 
+    /**
+     * @return a new multimap of the record's fields and values.
+     */
     public ImmutableListMultimap<String, String> getMultimap()
     {
-        return data;
+        final ImmutableListMultimap.Builder<String, String> builder = 
+            ImmutableListMultimap.builder();
+        for (int f = 0; f < fields.length; f++)
+        {
+            final String field = FieldDictionary.SHARED.nameOf(fields[f]);
+            for (int v = starts[f]; v < starts[f + 1]; v++) { builder.put(field, values[v]); }
+        }
+        return builder.build();
     }
 
     public ImmutableSet<String> getFields()
     {
-        return data.keySet();
+        final ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        for (int code : fields) { builder.add(FieldDictionary.SHARED.nameOf(code)); }
+        return builder.build();
     }
 
     public ImmutableList<String> getFieldValues(String field)
     {
-        return data.get(field);
+        final int f = fieldIndex(field);
+        if (f < 0) return ImmutableList.of();
+        return ImmutableList.copyOf(Arrays.asList(values).subList(starts[f], starts[f + 1]));
+    }
+    
+    /**
+     * @return the number of fields the record has values for.
+     */
+    public int nFields()
+    {
+        return fields.length;
+    }
+    
+    /**
+     * @return the name of the record's <code>f</code>th field.
+     */
+    public String fieldName(int f)
+    {
+        return FieldDictionary.SHARED.nameOf(fields[f]);
+    }
+    
+    /**
+     * @return the position of <code>field</code> among the record's fields,
+     * or -1 if the record has no values for it.
+     */
+    public int fieldIndex(String field)
+    {
+        final int code = FieldDictionary.SHARED.existingCodeOf(field);
+        for (int f = 0; f < fields.length; f++) { if (fields[f] == code) return f; }
+        return -1;
+    }
+    
+    /**
+     * @return the number of values of the record's <code>f</code>th field.
+     */
+    public int nValues(int f)
+    {
+        return starts[f + 1] - starts[f];
+    }
+    
+    /**
+     * @return the <code>i</code>th value of the record's <code>f</code>th 
+     * field.
+     */
+    public String value(int f, int i)
+    {
+        return values[starts[f] + i];
     }
     
     public Matchable asMatchable()
@@ -68,9 +193,10 @@ public class SGRRecord
     {
         SolrDocument doc = new SolrDocument();
         doc.addField("id", id);
-        for (Map.Entry<String, String> e : data.entries())
+        for (int f = 0; f < fields.length; f++)
         {
-            doc.addField(e.getKey(), e.getValue());
+            final String field = FieldDictionary.SHARED.nameOf(fields[f]);
+            for (int v = starts[f]; v < starts[f + 1]; v++) { doc.addField(field, values[v]); }
         }
         return doc;
     }
@@ -78,20 +204,31 @@ public class SGRRecord
     public static SGRRecord fromSolrDocument(SolrDocument doc)
     {
         final String id = (String) doc.getFieldValue("id");
-        final ImmutableListMultimap.Builder<String, String> dataBuilder 
-            = ImmutableListMultimap.builder();
+        final Collection<String> names = doc.getFieldNames();
+        final int[] fields = new int[names.size()];
+        final int[] starts = new int[names.size() + 1];
+        final List<String> values = Lists.newArrayListWithCapacity(names.size());
         
-        for (String fieldName: doc.getFieldNames())
+        int f = 0;
+        for (String fieldName: names)
         {
             if (fieldName.equals("score")) continue;
             if (fieldName.equals("id")) continue;
             
-            for (Object v: doc.getFieldValues(fieldName)) 
+            final Collection<Object> fieldValues = doc.getFieldValues(fieldName);
+            if (fieldValues == null || fieldValues.isEmpty()) continue;
+            
+            fields[f] = FieldDictionary.SHARED.codeOf(fieldName);
+            starts[f] = values.size();
+            for (Object v: fieldValues) 
             {
-                dataBuilder.put(fieldName, v.toString());
+                values.add(intern(fields[f], v.toString()));
             }
+            f++;
         }
-        return new SGRRecord(id, dataBuilder.build());
+        starts[f] = values.size();
+        return new SGRRecord(id, Arrays.copyOf(fields, f), Arrays.copyOf(starts, f + 1), 
+                             values.toArray(new String[values.size()]));
     }
     
     public static Builder builder(String id)
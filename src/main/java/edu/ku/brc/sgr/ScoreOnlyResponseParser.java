@@ -0,0 +1,286 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.solr.client.solrj.ResponseParser;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Parses an XML response for a query whose field list is only id and 
+ * score straight into arrays, without creating a SolrDocument per hit.
+ * Every result element becomes a {@link ScoredDocs} under its usual name; 
+ * the QTime and status of the response header are kept; everything else,
+ * such as explanations, is skipped.
+ * 
+ * The parser is stateless and can be shared between requests.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ScoreOnlyResponseParser extends ResponseParser
+{
+    public static final ScoreOnlyResponseParser INSTANCE = new ScoreOnlyResponseParser();
+    
+    private static final XMLInputFactory factory = XMLInputFactory.newInstance();
+    
+    /**
+     * The ids and scores of one result list.
+     */
+    public static class ScoredDocs
+    {
+        public final String[] ids;
+        public final float[] scores;
+        public final long numFound;
+        public final float maxScore;
+        
+        public ScoredDocs(String[] ids, float[] scores, long numFound, float maxScore)
+        {
+            this.ids = ids;
+            this.scores = scores;
+            this.numFound = numFound;
+            this.maxScore = maxScore;
+        }
+        
+        /**
+         * The ids and scores of a result parsed the usual way, e.g. by an
+         * embedded server.
+         */
+        public static ScoredDocs of(SolrDocumentList docs)
+        {
+            final String[] ids = new String[docs.size()];
+            final float[] scores = new float[docs.size()];
+            for (int i = 0; i < ids.length; i++)
+            {
+                final SolrDocument doc = docs.get(i);
+                ids[i] = String.valueOf(doc.getFieldValue("id"));
+                final Object score = doc.getFieldValue("score");
+                scores[i] = (score != null) ? ((Number) score).floatValue() : 0.0f;
+            }
+            return new ScoredDocs(ids, scores, docs.getNumFound(), 
+                    (docs.getMaxScore() != null) ? docs.getMaxScore() : 0.0f);
+        }
+        
+        public MatchResults toMatchResults(String matchedId, int qTime)
+        {
+            return new MatchResults(matchedId, qTime, maxScore, ids, scores);
+        }
+    }
+    
+    /**
+     * @return the ids and scores of a result parsed by this parser or the
+     * usual way.
+     */
+    static ScoredDocs scored(Object result)
+    {
+        if (result instanceof ScoredDocs) return (ScoredDocs) result;
+        if (result instanceof SolrDocumentList) return ScoredDocs.of((SolrDocumentList) result);
+        return new ScoredDocs(new String[0], new float[0], 0, 0.0f);
+    }
+    
+    static int qTime(NamedList<?> response)
+    {
+        final NamedList<?> header = (NamedList<?>) response.get("responseHeader");
+        return (header != null && header.get("QTime") != null) ? 
+                ((Number) header.get("QTime")).intValue() : 0;
+    }
+    
+    /**
+     * @return whether <code>query</code> asks for no fields but id and 
+     * score, and no explanations, so that this parser can be used.
+     */
+    public static boolean applies(SolrQuery query)
+    {
+        if (query.getBool(CommonParams.DEBUG_QUERY, false)) return false;
+        final String fl = query.get(CommonParams.FL);
+        if (fl == null) return false;
+        boolean any = false;
+        for (String field : Splitter.onPattern("[,\\s]+").omitEmptyStrings().split(fl))
+        {
+            if (!field.equals("id") && !field.equals("score")) return false;
+            any = true;
+        }
+        return any;
+    }
+    
+    @Override
+    public String getWriterType()
+    {
+        return "xml";
+    }
+    
+    @Override
+    public NamedList<Object> processResponse(InputStream body, String encoding)
+    {
+        try
+        {
+            return parse(factory.createXMLStreamReader(body, encoding));
+        } catch (XMLStreamException e)
+        {
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "parsing error", e);
+        }
+    }
+    
+    @Override
+    public NamedList<Object> processResponse(Reader reader)
+    {
+        try
+        {
+            return parse(factory.createXMLStreamReader(reader));
+        } catch (XMLStreamException e)
+        {
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "parsing error", e);
+        }
+    }
+    
+    private NamedList<Object> parse(XMLStreamReader xml) throws XMLStreamException
+    {
+        try
+        {
+            while (xml.hasNext())
+            {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT 
+                        && xml.getLocalName().equals("response"))
+                {
+                    return parseList(xml);
+                }
+            }
+            throw new XMLStreamException("no response element");
+        } finally
+        {
+            xml.close();
+        }
+    }
+    
+    /**
+     * Parse the children of the current element up to its end.
+     */
+    private NamedList<Object> parseList(XMLStreamReader xml) throws XMLStreamException
+    {
+        final NamedList<Object> list = new SimpleOrderedMap<Object>();
+        int depth = 0;
+        while (xml.hasNext())
+        {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                if (depth-- == 0) return list;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            
+            final String element = xml.getLocalName();
+            final String name = xml.getAttributeValue(null, "name");
+            if (element.equals("lst"))
+            {
+                list.add(name, parseList(xml));
+            }
+            else if (element.equals("result"))
+            {
+                list.add(name, parseResult(xml));
+            }
+            else if (element.equals("int") && ("QTime".equals(name) || "status".equals(name)))
+            {
+                list.add(name, Integer.valueOf(xml.getElementText().trim()));
+            }
+            else
+            {
+                skip(xml);
+            }
+        }
+        return list;
+    }
+    
+    private ScoredDocs parseResult(XMLStreamReader xml) throws XMLStreamException
+    {
+        final String numFound = xml.getAttributeValue(null, "numFound");
+        final String maxScore = xml.getAttributeValue(null, "maxScore");
+        
+        String[] ids = new String[16];
+        float[] scores = new float[16];
+        int n = 0;
+        while (xml.hasNext())
+        {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("result")) break;
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            
+            if (xml.getLocalName().equals("doc"))
+            {
+                if (n == ids.length)
+                {
+                    ids = Arrays.copyOf(ids, 2 * n);
+                    scores = Arrays.copyOf(scores, 2 * n);
+                }
+                n++;
+                continue;
+            }
+            
+            final String name = xml.getAttributeValue(null, "name");
+            if ("id".equals(name))
+            {
+                ids[n - 1] = xml.getElementText();
+            }
+            else if ("score".equals(name))
+            {
+                scores[n - 1] = Float.parseFloat(xml.getElementText());
+            }
+            else 
+            {
+                skip(xml);
+            }
+        }
+        return new ScoredDocs(Arrays.copyOf(ids, n), Arrays.copyOf(scores, n),
+                (numFound != null) ? Long.parseLong(numFound) : n,
+                (maxScore != null) ? Float.parseFloat(maxScore) : ((n > 0) ? scores[0] : 0.0f));
+    }
+    
+    /**
+     * Skip the current element and its children.
+     */
+    private static void skip(XMLStreamReader xml) throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext())
+        {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrResponse;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Sends each request to every shard in parallel and merges the responses as
+ * if they came from a single index: the documents are merged by score and
+ * the page from <code>start</code> to <code>start + rows</code> is taken,
+ * explanations are combined and the reported qTime is that of the slowest
+ * shard. Per document sections of batched MLT responses are merged the same
+ * way. Any shard's hits may fall anywhere in the page, so each is asked for
+ * its first <code>start + rows</code>.
+ * 
+ * Scores from different shards are compared directly, so the shards should
+ * hold similar distributions of documents for the idf parts of the scores 
+ * to agree. A shard only finds matches for indexed documents it holds, so
+ * {@link MatchableIndexedId} fetches the document and supplies it instead.
+ * 
+ * The requests are sent from a pool of threads started by the first request.
+ * Call {@link #close()} when done with the server to stop them; 
+ * {@link SGRMatcher#close()} does so for the servers it opens.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ShardedSolrServer extends SolrServer
+{
+    private static final long serialVersionUID = 1L;
+    
+    private static final Comparator<SolrDocument> BY_SCORE = new Comparator<SolrDocument>()
+    {
+        @Override
+        public int compare(SolrDocument a, SolrDocument b)
+        {
+            return Float.compare(score(b), score(a));
+        }
+    };
+    
+    private final ImmutableList<SolrServer> shards;
+    private transient ExecutorService executor = null;
+    
+    public ShardedSolrServer(List<? extends SolrServer> shards)
+    {
+        if (shards.isEmpty()) throw new IllegalArgumentException("no shards given");
+        this.shards = ImmutableList.copyOf(shards);
+    }
+    
+    @Override
+    public NamedList<Object> request(final SolrRequest request) 
+        throws SolrServerException, IOException
+    {
+        final SolrParams params = request.getParams();
+        final int start = (params != null) ? params.getInt(CommonParams.START, 0) : 0;
+        final int rows = (params != null) ? params.getInt(CommonParams.ROWS, 10) : 10;
+        final SolrRequest shardRequest = (start > 0) ? firstRows(request, start + rows) : request;
+        
+        final List<Future<NamedList<Object>>> pending = Lists.newArrayList();
+        for (final SolrServer shard : shards)
+        {
+            pending.add(getExecutor().submit(new Callable<NamedList<Object>>()
+            {
+                @Override
+                public NamedList<Object> call() throws Exception
+                {
+                    return shard.request(shardRequest);
+                }
+            }));
+        }
+        
+        final List<NamedList<?>> responses = Lists.newArrayListWithCapacity(shards.size());
+        try
+        {
+            for (Future<NamedList<Object>> f : pending) responses.add(f.get());
+        } catch (InterruptedException e)
+        {
+            for (Future<NamedList<Object>> f : pending) f.cancel(true);
+            throw new SolrServerException(e);
+        } catch (ExecutionException e)
+        {
+            for (Future<NamedList<Object>> f : pending) f.cancel(true);
+            if (e.getCause() instanceof SolrServerException) throw (SolrServerException) e.getCause();
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new SolrServerException(e.getCause());
+        }
+        
+        return merge(responses, start, rows);
+    }
+    
+    /**
+     * @return <code>request</code> asking for its first <code>rows</code> 
+     * hits.
+     */
+    private static SolrRequest firstRows(final SolrRequest request, int rows)
+    {
+        final ModifiableSolrParams params = new ModifiableSolrParams(request.getParams());
+        params.set(CommonParams.START, 0);
+        params.set(CommonParams.ROWS, rows);
+        final SolrRequest first = new SolrRequest(request.getMethod(), request.getPath())
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public SolrParams getParams()
+            {
+                return params;
+            }
+            
+            @Override
+            public Collection<ContentStream> getContentStreams() throws IOException
+            {
+                return request.getContentStreams();
+            }
+            
+            @Override
+            public SolrResponse process(SolrServer server)
+            {
+                throw new UnsupportedOperationException("only sent to the shards");
+            }
+        };
+        first.setResponseParser(request.getResponseParser());
+        return first;
+    }
+    
+    synchronized private ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("sgr-shard-%d")
+                    .build());
+        }
+        return executor;
+    }
+    
+    /**
+     * Merge corresponding sections of the shard responses, each holding its
+     * shard's first <code>start + rows</code> hits.
+     */
+    static NamedList<Object> merge(List<NamedList<?>> sections, int start, int rows)
+    {
+        final NamedList<Object> merged = new SimpleOrderedMap<Object>();
+        final NamedList<?> first = sections.get(0);
+        for (int i = 0; i < first.size(); i++)
+        {
+            final String name = first.getName(i);
+            final List<Object> values = Lists.newArrayListWithCapacity(sections.size());
+            for (NamedList<?> section : sections)
+            {
+                final Object value = section.get(name);
+                if (value != null) values.add(value);
+            }
+            
+            if (name.equals("responseHeader")) merged.add(name, mergeHeaders(values));
+            else if (name.equals("response")) merged.add(name, mergeDocuments(values, start, rows));
+            else if (name.equals("debug")) merged.add(name, mergeDebug(values));
+            else if (name.equals(MatchableRecord.MULTI_DOC_RESULTS))
+            {
+                merged.add(name, mergeByName(values, start, rows));
+            }
+            else merged.add(name, values.isEmpty() ? null : values.get(0));
+        }
+        return merged;
+    }
+    
+    private static NamedList<Object> mergeHeaders(List<Object> headers)
+    {
+        int qTime = 0;
+        int status = 0;
+        for (Object h : headers)
+        {
+            final NamedList<?> header = (NamedList<?>) h;
+            if (header.get("QTime") != null)
+            {
+                qTime = Math.max(qTime, ((Number) header.get("QTime")).intValue());
+            }
+            if (header.get("status") != null && status == 0)
+            {
+                status = ((Number) header.get("status")).intValue();
+            }
+        }
+        final NamedList<Object> merged = new SimpleOrderedMap<Object>();
+        merged.add("status", status);
+        merged.add("QTime", qTime);
+        return merged;
+    }
+    
+    private static Object mergeDocuments(List<Object> lists, int start, int rows)
+    {
+        if (!lists.isEmpty() && lists.get(0) instanceof ScoreOnlyResponseParser.ScoredDocs)
+        {
+            return mergeScored(lists, start, rows);
+        }
+        
+        final SolrDocumentList merged = new SolrDocumentList();
+        final List<SolrDocument> all = Lists.newArrayList();
+        long numFound = 0;
+        Float maxScore = null;
+        for (Object l : lists)
+        {
+            final SolrDocumentList docs = (SolrDocumentList) l;
+            numFound += docs.getNumFound();
+            if (docs.getMaxScore() != null)
+            {
+                maxScore = (maxScore == null) ? 
+                        docs.getMaxScore() : Math.max(maxScore, docs.getMaxScore());
+            }
+            all.addAll(docs);
+        }
+        Collections.sort(all, BY_SCORE);
+        merged.addAll(all.subList(Math.min(start, all.size()), Math.min(start + rows, all.size())));
+        merged.setNumFound(numFound);
+        merged.setStart(start);
+        merged.setMaxScore(maxScore);
+        return merged;
+    }
+    
+    private static ScoreOnlyResponseParser.ScoredDocs mergeScored(List<Object> lists, 
+                                                                  int start, int rows)
+    {
+        // Repeatedly take the best remaining hit of any shard; each shard's
+        // hits are already in descending order of score.
+        final int[] next = new int[lists.size()];
+        final List<String> ids = Lists.newArrayList();
+        final List<Float> scores = Lists.newArrayList();
+        long numFound = 0;
+        float maxScore = 0.0f;
+        for (Object l : lists)
+        {
+            final ScoreOnlyResponseParser.ScoredDocs docs = (ScoreOnlyResponseParser.ScoredDocs) l;
+            numFound += docs.numFound;
+            maxScore = Math.max(maxScore, docs.maxScore);
+        }
+        int taken = 0;
+        while (taken < start + rows)
+        {
+            int best = -1;
+            for (int s = 0; s < lists.size(); s++)
+            {
+                final ScoreOnlyResponseParser.ScoredDocs docs = 
+                    (ScoreOnlyResponseParser.ScoredDocs) lists.get(s);
+                if (next[s] >= docs.ids.length) continue;
+                if (best < 0 || docs.scores[next[s]] > 
+                        ((ScoreOnlyResponseParser.ScoredDocs) lists.get(best)).scores[next[best]])
+                {
+                    best = s;
+                }
+            }
+            if (best < 0) break;
+            final ScoreOnlyResponseParser.ScoredDocs docs = 
+                (ScoreOnlyResponseParser.ScoredDocs) lists.get(best);
+            if (taken++ >= start)
+            {
+                ids.add(docs.ids[next[best]]);
+                scores.add(docs.scores[next[best]]);
+            }
+            next[best]++;
+        }
+        
+        final float[] s = new float[scores.size()];
+        for (int i = 0; i < s.length; i++) s[i] = scores.get(i);
+        return new ScoreOnlyResponseParser.ScoredDocs(
+                ids.toArray(new String[ids.size()]), s, numFound, maxScore);
+    }
+    
+    private static NamedList<Object> mergeDebug(List<Object> debugs)
+    {
+        final NamedList<Object> merged = new SimpleOrderedMap<Object>();
+        final NamedList<Object> explain = new SimpleOrderedMap<Object>();
+        for (Object d : debugs)
+        {
+            final NamedList<?> debug = (NamedList<?>) d;
+            for (int i = 0; i < debug.size(); i++)
+            {
+                final String name = debug.getName(i);
+                final Object value = debug.getVal(i);
+                if (name.equals("explain")) addAll(explain, value);
+                else if (merged.get(name) == null) merged.add(name, value);
+            }
+        }
+        merged.add("explain", explain);
+        return merged;
+    }
+    
+    private static void addAll(NamedList<Object> to, Object explained)
+    {
+        if (explained instanceof NamedList<?>)
+        {
+            final NamedList<?> byId = (NamedList<?>) explained;
+            for (int i = 0; i < byId.size(); i++) to.add(byId.getName(i), byId.getVal(i));
+        }
+        else if (explained instanceof Map<?, ?>)
+        {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) explained).entrySet())
+            {
+                to.add(String.valueOf(e.getKey()), e.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Merge lists of sections keyed by name, such as the per document 
+     * results of a batched MLT request.
+     */
+    private static NamedList<Object> mergeByName(List<Object> lists, int start, int rows)
+    {
+        final NamedList<Object> merged = new SimpleOrderedMap<Object>();
+        final NamedList<?> first = (NamedList<?>) lists.get(0);
+        for (int i = 0; i < first.size(); i++)
+        {
+            final String name = first.getName(i);
+            final List<NamedList<?>> sections = Lists.newArrayListWithCapacity(lists.size());
+            for (Object l : lists)
+            {
+                final Object section = ((NamedList<?>) l).get(name);
+                if (section != null) sections.add((NamedList<?>) section);
+            }
+            merged.add(name, merge(sections, start, rows));
+        }
+        return merged;
+    }
+    
+    private static float score(SolrDocument doc)
+    {
+        final Object score = doc.getFieldValue("score");
+        return (score != null) ? ((Number) score).floatValue() : 0.0f;
+    }
+    
+    public ImmutableList<SolrServer> getShards()
+    {
+        return shards;
+    }
+    
+    /**
+     * Stop the threads used to scatter requests. They are started again if
+     * the server is used afterwards.
+     */
+    synchronized public void close()
+    {
+        if (executor != null) executor.shutdown();
+        executor = null;
+    }
+}
@@ -0,0 +1,95 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+/**
+ * Passes results on to another accumulator while keeping 
+ * {@link QuantileSketch}es of their maxScore and qTime, so that score 
+ * quantiles can be read while a batch is still running without going back
+ * over the results.
+ * 
+ * When resuming, the sketches saved from the earlier run can be passed in
+ * and are updated in place.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class SketchingAccumulator implements BatchMatchResultAccumulator
+{
+    private final BatchMatchResultAccumulator delegate;
+    private final QuantileSketch scores;
+    private final QuantileSketch qTimes;
+    
+    public SketchingAccumulator(BatchMatchResultAccumulator delegate)
+    {
+        this(delegate, new QuantileSketch(), new QuantileSketch());
+    }
+    
+    public SketchingAccumulator(BatchMatchResultAccumulator delegate, 
+                                QuantileSketch scores, QuantileSketch qTimes)
+    {
+        this.delegate = delegate;
+        this.scores = scores;
+        this.qTimes = qTimes;
+    }
+    
+    @Override
+    public void addResult(MatchResults result)
+    {
+        delegate.addResult(result);
+        scores.update(result.maxScore);
+        qTimes.update(result.qTime);
+    }
+    
+    @Override
+    public CompletedIds getCompletedIds()
+    {
+        return delegate.getCompletedIds();
+    }
+    
+    @Override
+    public int nCompleted()
+    {
+        return delegate.nCompleted();
+    }
+    
+    @Override
+    public SGRMatcher getMatcher()
+    {
+        return delegate.getMatcher();
+    }
+    
+    public BatchMatchResultAccumulator getDelegate()
+    {
+        return delegate;
+    }
+    
+    public QuantileSketch getScores()
+    {
+        return scores;
+    }
+    
+    public QuantileSketch getQTimes()
+    {
+        return qTimes;
+    }
+}
@@ -0,0 +1,247 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * An immutable, sorted set of ids packed into a single buffer, normally a
+ * memory mapped file, so that it costs no heap beyond the mapping. 
+ * 
+ * File layout: magic, version, the result log offset the index covers, 
+ * the number of ids, the length of the id data, the UTF-8 bytes of all ids
+ * in unsigned byte order, and finally count + 1 offsets into that data.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class SortedIdIndex implements CompletedIds
+{
+    private static final int MAGIC = 0x53475249; // "SGRI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    
+    public static final SortedIdIndex EMPTY = 
+        new SortedIdIndex(ByteBuffer.wrap(new byte[4]), 0, 0, 0, 0L);
+    
+    public final long logOffset;
+    
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int dataStart;
+    private final int offsetsStart;
+    
+    private SortedIdIndex(ByteBuffer buffer, int count, int dataStart, int offsetsStart,
+                          long logOffset)
+    {
+        this.buffer = buffer;
+        this.count = count;
+        this.dataStart = dataStart;
+        this.offsetsStart = offsetsStart;
+        this.logOffset = logOffset;
+    }
+    
+    public static SortedIdIndex map(File file) throws IOException
+    {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC 
+                    || buffer.getInt(4) != VERSION)
+            {
+                throw new IOException("not an id index: " + file);
+            }
+            final long logOffset = buffer.getLong(8);
+            final int count = buffer.getInt(16);
+            final int dataLength = buffer.getInt(20);
+            if ((long) HEADER_SIZE + dataLength + 4L * (count + 1) != buffer.limit())
+            {
+                throw new IOException("truncated id index: " + file);
+            }
+            return new SortedIdIndex(buffer, count, HEADER_SIZE, HEADER_SIZE + dataLength, 
+                                     logOffset);
+        } finally
+        {
+            // The mapping stays valid after the channel is closed.
+            raf.close();
+        }
+    }
+    
+    @Override
+    public boolean contains(String id)
+    {
+        final byte[] key = utf8(id);
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi)
+        {
+            final int mid = (lo + hi) >>> 1;
+            final int c = compareAt(mid, key);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int size()
+    {
+        return count;
+    }
+    
+    private byte[] bytesAt(int i)
+    {
+        final int start = buffer.getInt(offsetsStart + 4 * i);
+        final int end = buffer.getInt(offsetsStart + 4 * (i + 1));
+        final byte[] bytes = new byte[end - start];
+        for (int j = 0; j < bytes.length; j++)
+        {
+            bytes[j] = buffer.get(dataStart + start + j);
+        }
+        return bytes;
+    }
+    
+    private int compareAt(int i, byte[] key)
+    {
+        final int start = dataStart + buffer.getInt(offsetsStart + 4 * i);
+        final int end = dataStart + buffer.getInt(offsetsStart + 4 * (i + 1));
+        final int len = Math.min(end - start, key.length);
+        for (int j = 0; j < len; j++)
+        {
+            final int c = (buffer.get(start + j) & 0xff) - (key[j] & 0xff);
+            if (c != 0) return c;
+        }
+        return (end - start) - key.length;
+    }
+    
+    /**
+     * Write an index holding the ids of <code>base</code> together with 
+     * <code>added</code>, covering the result log up to <code>logOffset</code>.
+     * The file is written beside <code>file</code> and renamed into place so
+     * that a crash never leaves a partial index behind.
+     */
+    public static void write(File file, long logOffset, SortedIdIndex base, 
+                             Collection<String> added) throws IOException
+    {
+        final byte[][] newIds = new byte[added.size()][];
+        int n = 0;
+        for (String id : added) { newIds[n++] = utf8(id); }
+        Arrays.sort(newIds, UNSIGNED_ORDER);
+        
+        // The ids and offsets are streamed out first, then the header, 
+        // which needs the final count and length, is written in place.
+        final File tmp = new File(file.getPath() + ".tmp");
+        final DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+        int count = 0;
+        int length = 0;
+        try
+        {
+            data.write(new byte[HEADER_SIZE]);
+            
+            int[] offsets = new int[base.count + newIds.length + 1];
+            int i = 0;
+            int j = 0;
+            byte[] last = null;
+            while (i < base.count || j < newIds.length)
+            {
+                final byte[] next;
+                if (j >= newIds.length) next = base.bytesAt(i++);
+                else if (i >= base.count) next = newIds[j++];
+                else if (base.compareAt(i, newIds[j]) <= 0) next = base.bytesAt(i++);
+                else next = newIds[j++];
+                
+                if (last != null && UNSIGNED_ORDER.compare(last, next) == 0) continue;
+                offsets[count++] = length;
+                data.write(next);
+                length += next.length;
+                last = next;
+            }
+            offsets[count] = length;
+            for (int k = 0; k <= count; k++) { data.writeInt(offsets[k]); }
+        } finally
+        {
+            data.close();
+        }
+        
+        final RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(logOffset);
+            out.writeInt(count);
+            out.writeInt(length);
+            out.getFD().sync();
+        } finally
+        {
+            out.close();
+        }
+        
+        if (!tmp.renameTo(file))
+        {
+            // Windows will not rename over an existing file.
+            file.delete();
+            if (!tmp.renameTo(file)) throw new IOException("could not replace " + file);
+        }
+    }
+    
+    private static byte[] utf8(String s)
+    {
+        try
+        {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    private static final Comparator<byte[]> UNSIGNED_ORDER = new Comparator<byte[]>()
+    {
+        @Override
+        public int compare(byte[] a, byte[] b)
+        {
+            final int len = Math.min(a.length, b.length);
+            for (int i = 0; i < len; i++)
+            {
+                final int c = (a[i] & 0xff) - (b[i] & 0xff);
+                if (c != 0) return c;
+            }
+            return a.length - b.length;
+        }
+    };
+}
@@ -0,0 +1,227 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An accumulator that hands results to a consumer as they arrive instead of
+ * keeping them. Results wait in a queue of fixed capacity; when the consumer
+ * falls behind, {@link #addResult(MatchResults)} blocks the worker threads,
+ * which in turn blocks the {@link BatchMatcher} from reading more input, so
+ * the results held in memory are bounded by the capacity.
+ * 
+ * The results are consumed by iterating this object once, typically while 
+ * the batch runs on another thread started with {@link #start(BatchMatcher)}.
+ * Results can also be passed on to a second accumulator, e.g. a file, which
+ * then provides the completed ids for resuming. Without one, the id of every
+ * completed item is kept in a {@link CompletedIdSet}, which grows with the 
+ * batch: a few bytes per numeric id, more for others.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class StreamingBatchMatchResults implements BatchMatchResultAccumulator, Iterable<MatchResults>
+{
+    public static final int DEFAULT_CAPACITY = 1000;
+    
+    // Marks the end of the stream in the queue.
+    private static final MatchResults END = 
+        new MatchResults(null, 0, 0.0f, ImmutableList.<Match>of());
+    
+    public final int capacity;
+    
+    private final SGRMatcher matcher;
+    private final BatchMatchResultAccumulator delegate;
+    private final CompletedIdSet completedIds;
+    private final BlockingQueue<MatchResults> queue;
+    
+    private volatile boolean cancelled = false;
+    private volatile Throwable failure = null;
+    private int nCompleted = 0;
+    private boolean iterated = false;
+    
+    public StreamingBatchMatchResults(SGRMatcher matcher)
+    {
+        this(matcher, DEFAULT_CAPACITY);
+    }
+    
+    public StreamingBatchMatchResults(SGRMatcher matcher, int capacity)
+    {
+        this.matcher = matcher;
+        this.delegate = null;
+        this.capacity = capacity;
+        this.completedIds = new CompletedIdSet();
+        this.queue = new ArrayBlockingQueue<MatchResults>(capacity);
+    }
+    
+    /**
+     * Stream the results and also record them in <code>delegate</code>.
+     */
+    public StreamingBatchMatchResults(BatchMatchResultAccumulator delegate, int capacity)
+    {
+        this.matcher = delegate.getMatcher();
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.completedIds = null;
+        this.queue = new ArrayBlockingQueue<MatchResults>(capacity);
+    }
+    
+    @Override
+    public void addResult(MatchResults result)
+    {
+        if (delegate != null) delegate.addResult(result);
+        else completedIds.add(result.matchedId);
+        
+        put(result);
+        synchronized (this) { nCompleted++; }
+    }
+    
+    private void put(MatchResults result)
+    {
+        try
+        {
+            while (!queue.offer(result, 100, TimeUnit.MILLISECONDS))
+            {
+                if (cancelled) throw new CancellationException("result stream was cancelled");
+            }
+        } catch (InterruptedException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    /**
+     * Run <code>batch</code> on a daemon thread, ending the stream when it 
+     * finishes. A failure of the batch is thrown from the iterator.
+     */
+    public Thread start(final BatchMatcher batch)
+    {
+        final Thread t = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    batch.run();
+                    finish();
+                } catch (Throwable e)
+                {
+                    fail(e);
+                }
+            }
+        }, "sgr-streaming-batch");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+    
+    /**
+     * End the stream after the results already added. Needed only when the
+     * batch is run without {@link #start(BatchMatcher)}.
+     */
+    public void finish()
+    {
+        try
+        {
+            put(END);
+        } catch (CancellationException e) {}
+    }
+    
+    /**
+     * End the stream with <code>e</code>, which the iterator throws after
+     * the results already added.
+     */
+    public void fail(Throwable e)
+    {
+        failure = e;
+        finish();
+    }
+    
+    /**
+     * Stop consuming. Workers blocked adding results fail, which stops the
+     * batch.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+        queue.clear();
+    }
+    
+    /**
+     * The results in the order they were added. Blocks until the next result
+     * arrives or the stream ends; can be called only once.
+     */
+    @Override
+    synchronized public Iterator<MatchResults> iterator()
+    {
+        if (iterated) throw new IllegalStateException("results can only be iterated once.");
+        iterated = true;
+        
+        return new AbstractIterator<MatchResults>()
+        {
+            @Override
+            protected MatchResults computeNext()
+            {
+                final MatchResults next;
+                try
+                {
+                    next = queue.take();
+                } catch (InterruptedException e)
+                {
+                    cancel();
+                    throw new RuntimeException(e);
+                }
+                if (next != END) return next;
+                
+                if (failure != null) throw new RuntimeException(failure);
+                return endOfData();
+            }
+        };
+    }
+    
+    @Override
+    public CompletedIds getCompletedIds()
+    {
+        return (delegate != null) ? delegate.getCompletedIds() : completedIds;
+    }
+    
+    @Override
+    synchronized public int nCompleted()
+    {
+        return (delegate != null) ? delegate.nCompleted() : nCompleted;
+    }
+    
+    @Override
+    public SGRMatcher getMatcher()
+    {
+        return matcher;
+    }
+}
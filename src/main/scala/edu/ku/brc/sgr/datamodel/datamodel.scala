@@ -2,9 +2,14 @@ package edu.ku.brc.sgr.datamodel
 
 import scala.collection.JavaConversions._
 
+import java.io.{BufferedInputStream, BufferedOutputStream, DataInputStream, DataOutputStream}
+import java.io.{File, FileInputStream, FileOutputStream, InputStream, OutputStream}
 import java.sql.Connection
 import java.sql.Timestamp
-import java.util.Date
+import java.util.{Date, Locale}
+import java.util.concurrent.{Executors, LinkedBlockingQueue, ThreadFactory, TimeUnit}
+import java.lang.reflect.{InvocationHandler, InvocationTargetException, Method, Proxy}
+import java.util.zip.{GZIPInputStream, GZIPOutputStream}
 
 import org.squeryl.PrimitiveTypeMode._
 import org.squeryl.{Schema, KeyedEntity, Session, SessionFactory, ForeignKeyDeclaration} 
@@ -12,13 +17,19 @@ import org.squeryl.dsl.{OneToMany, ManyToOne}
 import org.squeryl.dsl.ast.TypedExpressionNode
 import org.squeryl.adapters.MySQLAdapter
 
-import com.google.common.collect.ImmutableSet
-import ImmutableSet.{Builder => ImmutableSetBuilder}
+import org.apache.solr.servlet.SolrRequestParsers
+
 import com.google.common.base.Function
 
 import edu.ku.brc.sgr
 import sgr.BatchMatchResultAccumulator
+import sgr.CompletedIds
+import sgr.CompletedIdSet
+import sgr.Fingerprints
 import sgr.MatchResults
+import sgr.PartitionLeases
+import sgr.PartitionedBatchRun
+import sgr.QuantileSketch
 import sgr.SGRMatcher
 
 class MatchConfiguration(var name: String,
@@ -38,7 +49,7 @@ class MatchConfiguration(var name: String,
       
     def createMatcherFactory() : SGRMatcher.Factory = {
       val factory = SGRMatcher.getFactory
-      factory.serverUrl = serverUrl
+      factory.setLocation(serverUrl)
       factory.nRows = nRows
       factory.boostInterestingTerms = boostInterestingTerms
       factory.similarityFields = similarityFields
@@ -91,6 +102,11 @@ class BatchMatchResultSet(var name: String,
     val id : Long = 0
     
     val insertTime = new Timestamp((new Date).getTime)
+    
+    /**
+     * SGRMatcher.getQueryFingerprint of the matcher that produced the items.
+     */
+    var queryFingerprint = ""
   
     lazy val items: OneToMany[BatchMatchResultItem] = BatchMatchSchema.setToItems.left(this)
     
@@ -119,6 +135,148 @@ class BatchMatchResultSet(var name: String,
       from(items)(i => select(i)).toList
     }
     
+    /**
+     * The first n items in descending order of maxScore, then id.
+     */
+    def getTopItems(n: Int) : java.util.List[BatchMatchResultItem] = transaction {
+      from(BatchMatchSchema.items)(i => 
+        where(i.batchMatchResultSetId === id) 
+        select(i) 
+        orderBy(i.maxScore desc, i.id desc)).page(0, n).toList
+    }
+    
+    /**
+     * The n items following the item with the given maxScore and id in 
+     * descending order of maxScore, then id. Each page is a range scan of
+     * the (batchMatchResultSetId, maxScore, id) index however deep into the
+     * result set it is. The score is bound as a double, the exact value of
+     * the stored float: MySQL would read a float parameter from its shortest
+     * decimal form, which need not equal the stored value, and items tied 
+     * with the last of a page would be skipped.
+     */
+    def getItemsAfter(score: Float, itemId: Long, n: Int) : java.util.List[BatchMatchResultItem] = 
+      transaction {
+        val exact = score.toDouble
+        from(BatchMatchSchema.items)(i => 
+          where(i.batchMatchResultSetId === id and 
+                ((i.maxScore lt exact) or (i.maxScore === exact and (i.id lt itemId))))
+          select(i) 
+          orderBy(i.maxScore desc, i.id desc)).page(0, n).toList
+      }
+    
+    def getItemsAfter(item: BatchMatchResultItem, n: Int) : java.util.List[BatchMatchResultItem] =
+      getItemsAfter(item.maxScore, item.id, n)
+    
+    /**
+     * All items in descending order of maxScore, fetched pageSize at a time,
+     * each page in its own transaction, so memory use and transaction length
+     * stay bounded however many items there are.
+     */
+    def iterateItems(pageSize: Int = 1000) : java.util.Iterator[BatchMatchResultItem] =
+      new PagedIterator[BatchMatchResultItem](pageSize, 
+        (last, n) => last match {
+          case None => getTopItems(n)
+          case Some(item) => getItemsAfter(item, n)
+        })
+    
+    /**
+     * Counts of the items by maxScore in nBins equal bins from min to max,
+     * computed by the database. Scores at or above max count in the last bin.
+     */
+    def getHistogram(nBins: Int, min: Double, max: Double) : Array[Long] = transaction {
+      val counts = new Array[Long](nBins)
+      Sql.query("select least(floor((maxScore - ?) / ?), ?) as b, count(*) from " + 
+                BatchMatchSchema.items.name + 
+                " where batchMatchResultSetId = ? and maxScore >= ? group by b",
+                min, (max - min) / nBins, nBins - 1, id, min) { rs =>
+        while (rs.next) counts(rs.getInt(1)) = rs.getLong(2)
+      }
+      counts
+    }
+    
+    /**
+     * The same histogram as getHistogram, read from the bins maintained as 
+     * items are added, so it takes time independent of the number of items.
+     * Each stored bin of width ScoreHistogram.binWidth is counted whole in
+     * the bin its midpoint falls in.
+     */
+    def getStoredHistogram(nBins: Int, min: Double, max: Double) : Array[Long] = transaction {
+      val counts = new Array[Long](nBins)
+      val width = (max - min) / nBins
+      for (b <- from(BatchMatchSchema.histogramBins)(h => 
+                  where(h.batchMatchResultSetId === id) select(h))) {
+        val mid = (b.bin + 0.5) * ScoreHistogram.binWidth
+        if (mid >= min) counts(math.min(nBins - 1, ((mid - min) / width).toInt)) += b.nItems
+      }
+      counts
+    }
+    
+    /**
+     * Recompute the stored histogram from the items, e.g. for result sets
+     * created before it was maintained.
+     */
+    def rebuildHistogram() : Unit = transaction {
+      val bins = BatchMatchSchema.histogramBins.name
+      Sql.update("delete from " + bins + " where batchMatchResultSetId = ?", id)
+      Sql.update("insert into " + bins + " (batchMatchResultSetId, bin, nItems) " +
+                 "select batchMatchResultSetId, floor(maxScore / ?) as b, count(*) from " + 
+                 BatchMatchSchema.items.name + 
+                 " where batchMatchResultSetId = ? group by batchMatchResultSetId, b",
+                 ScoreHistogram.binWidth, id)
+    }
+    
+    /**
+     * The maxScore below which each fraction qs(i) of the items fall, 
+     * computed by the database.
+     */
+    def getQuantiles(qs: Array[Double]) : Array[Double] = transaction {
+      val n : Long = from(BatchMatchSchema.items)(i => 
+        where(i.batchMatchResultSetId === id) compute(count))
+      if (n == 0) qs map (_ => 0.0)
+      else qs map { q =>
+        val k = math.min(n - 1, math.max(0L, math.ceil(q * n).toLong - 1))
+        Sql.query("select maxScore from " + BatchMatchSchema.items.name + 
+                  " where batchMatchResultSetId = ? order by maxScore limit 1 offset ?", id, k) { rs =>
+          if (rs.next) rs.getFloat(1).toDouble else 0.0
+        }
+      }
+    }
+    
+    /**
+     * Estimated maxScore quantiles from the stored sketches, which take time
+     * independent of the number of items. 
+     */
+    def getSketchedQuantiles(qs: Array[Double]) : Array[Double] = 
+      getScoreSketch.getQuantiles(qs) map (_.toDouble)
+    
+    def getScoreSketch() : QuantileSketch = transaction { ScoreSketches.load(id)._1 }
+    
+    def getQTimeSketch() : QuantileSketch = transaction { ScoreSketches.load(id)._2 }
+    
+    /**
+     * Recompute the stored sketches from the items, e.g. for result sets
+     * created before they were maintained.
+     */
+    def rebuildSketches() : Unit = {
+      val scores = new QuantileSketch
+      val qTimes = new QuantileSketch
+      val all = iterateItems()
+      while (all.hasNext) {
+        val item = all.next
+        scores.update(item.maxScore)
+        qTimes.update(item.qTime)
+      }
+      transaction {
+        Sql.update("delete from " + BatchMatchSchema.sketches.name + " where batchMatchResultSetId = ?", id)
+        ScoreSketches.save(id, scores, qTimes)
+      }
+    }
+    
+    def countAbove(threshold: Double) : Long = transaction {
+      from(BatchMatchSchema.items)(i => 
+        where(i.batchMatchResultSetId === id and (i.maxScore gt threshold.toFloat)) compute(count))
+    }
+    
     def getMatchConfiguration() : MatchConfiguration =  transaction(matchConfiguration.single)
     
     def updateProperties(newName: String, newRemarks: String) : Unit = transaction {
@@ -150,12 +308,240 @@ class BatchMatchResultItem(val batchMatchResultSetId: Long,
     
     lazy val set: ManyToOne[BatchMatchResultSet] = BatchMatchSchema.setToItems.right(this)
 }
+
+/**
+ * Iterates over pages fetched on demand. fetch is given the last element 
+ * of the previous page, if any, and the page size; a page shorter than the
+ * page size is the last.
+ */
+class PagedIterator[T](pageSize: Int, fetch: (Option[T], Int) => java.util.List[T]) 
+    extends java.util.Iterator[T] {
+  
+  private var page : java.util.List[T] = fetch(None, pageSize)
+  private var pos = 0
+  
+  override def hasNext() : Boolean = {
+    if (pos == page.size && page.size == pageSize) {
+      page = fetch(Some(page.get(page.size - 1)), pageSize)
+      pos = 0
+    }
+    pos < page.size
+  }
+  
+  override def next() : T = {
+    if (!hasNext) throw new java.util.NoSuchElementException
+    pos += 1
+    page.get(pos - 1)
+  }
+  
+  override def remove() = throw new UnsupportedOperationException
+}
+
+/**
+ * The number of a result set's items whose maxScore falls in one bin of 
+ * width ScoreHistogram.binWidth, starting at bin * binWidth.
+ */
+class ScoreHistogramBin(val batchMatchResultSetId: Long,
+                        val bin: Int,
+                        val nItems: Long)
+    extends KeyedEntity[Long] {
+  
+    val id : Long = 0
+}
+
+/**
+ * Maintains the stored score histograms as result items are inserted.
+ */
+object ScoreHistogram {
+  val binWidth = 0.1
+  
+  def binOf(score: Float) : Int = math.floor(score / binWidth).toInt
+  
+  /**
+   * Count newly inserted items, within the transaction that inserts them.
+   * Bins are updated in (set, bin) order, so that concurrent writers lock 
+   * shared rows in the same order and cannot deadlock.
+   */
+  def add(items: Iterable[BatchMatchResultItem]) : Unit = {
+    val counts = (items groupBy (i => (i.batchMatchResultSetId, binOf(i.maxScore))) 
+                  mapValues (_.size)).toList sortBy (_._1)
+    if (!counts.isEmpty) {
+      val stmt = Session.currentSession.connection.prepareStatement(
+          "insert into " + BatchMatchSchema.histogramBins.name + 
+          " (batchMatchResultSetId, bin, nItems) values (?, ?, ?)" +
+          " on duplicate key update nItems = nItems + values(nItems)")
+      try {
+        for (((setId, bin), n) <- counts) {
+          stmt.setLong(1, setId)
+          stmt.setInt(2, bin)
+          stmt.setLong(3, n)
+          stmt.addBatch()
+        }
+        stmt.executeBatch()
+      } finally {
+        stmt.close()
+      }
+    }
+  }
+}
+
+/**
+ * Quantile sketches of the maxScore and qTime of some of a result set's 
+ * items. Merged together, a result set's rows summarize all its items.
+ */
+class ScoreSketchRow(val batchMatchResultSetId: Long,
+                     val scores: Array[Byte],
+                     val qTimes: Array[Byte])
+    extends KeyedEntity[Long] {
+  
+    val id : Long = 0
+}
+
+/**
+ * Maintains the stored sketches as result items are inserted. Writers sketch
+ * their items in memory and each save adds a row sketching the items since 
+ * the last, so writers never contend for a row; once a result set has more
+ * than maxRows rows they are merged into one.
+ */
+object ScoreSketches {
+  val maxRows = 32
+  
+  /**
+   * Sketch newly inserted items, within the transaction that inserts them.
+   */
+  def add(items: Iterable[BatchMatchResultItem]) : Unit = 
+    for ((setId, setItems) <- items groupBy (_.batchMatchResultSetId)) {
+      val scores = new QuantileSketch
+      val qTimes = new QuantileSketch
+      for (item <- setItems) {
+        scores.update(item.maxScore)
+        qTimes.update(item.qTime)
+      }
+      save(setId, scores, qTimes)
+    }
+  
+  def save(setId: Long, scores: QuantileSketch, qTimes: QuantileSketch) : Unit =
+    BatchMatchSchema.sketches.insert(new ScoreSketchRow(setId, scores.toBytes, qTimes.toBytes))
+  
+  /**
+   * The merged score and qTime sketches of a result set.
+   */
+  def load(setId: Long) : (QuantileSketch, QuantileSketch) = 
+    merged(from(BatchMatchSchema.sketches)(s => where(s.batchMatchResultSetId === setId) select(s)).toList)
+  
+  /**
+   * Merge the result set's rows if there are too many, in a transaction of
+   * its own after the inserting one. Losing a deadlock or timing out on a 
+   * lock, with another worker doing the same, is ignored: the next call 
+   * tries again. Any other failure is thrown.
+   */
+  def compactIfNeeded(setId: Long) : Unit = try {
+    transaction {
+      val n : Long = from(BatchMatchSchema.sketches)(s => 
+        where(s.batchMatchResultSetId === setId) compute(count))
+      if (n > maxRows) compact(setId)
+    }
+  } catch {
+    case e: RuntimeException if Sql.isLockConflict(e) =>
+  }
+  
+  private def compact(setId: Long) : Unit = {
+    val table = BatchMatchSchema.sketches.name
+    val rows = Sql.query("select id, scores, qTimes from " + table + 
+                         " where batchMatchResultSetId = ? for update", setId) { rs =>
+      val found = new scala.collection.mutable.ListBuffer[(Long, Array[Byte], Array[Byte])]
+      while (rs.next) found += ((rs.getLong(1), rs.getBytes(2), rs.getBytes(3)))
+      found.toList
+    }
+    val (scores, qTimes) = merged(rows map { case (_, s, q) => new ScoreSketchRow(setId, s, q) })
+    for ((rowId, _, _) <- rows) Sql.update("delete from " + table + " where id = ?", rowId)
+    save(setId, scores, qTimes)
+  }
+  
+  private def merged(rows: Iterable[ScoreSketchRow]) : (QuantileSketch, QuantileSketch) = {
+    val scores = new QuantileSketch
+    val qTimes = new QuantileSketch
+    for (row <- rows) {
+      scores.merge(QuantileSketch.fromBytes(row.scores))
+      qTimes.merge(QuantileSketch.fromBytes(row.qTimes))
+    }
+    (scores, qTimes)
+  }
+}
+
+/**
+ * Plain SQL for what the query DSL cannot express, run on the connection 
+ * of the current transaction.
+ */
+private[datamodel] object Sql {
+  def query[T](sql: String, params: Any*)(f: java.sql.ResultSet => T) : T = {
+    val stmt = prepare(sql, params)
+    try {
+      val rs = stmt.executeQuery
+      try f(rs) finally rs.close
+    } finally {
+      stmt.close
+    }
+  }
+  
+  def update(sql: String, params: Any*) : Int = {
+    val stmt = prepare(sql, params)
+    try stmt.executeUpdate finally stmt.close
+  }
+  
+  private def prepare(sql: String, params: Seq[Any]) = {
+    val stmt = Session.currentSession.connection.prepareStatement(sql)
+    for ((p, i) <- params.zipWithIndex) stmt.setObject(i + 1, p.asInstanceOf[AnyRef])
+    stmt
+  }
+  
+  /**
+   * The SQL error behind e, looking through the exceptions Squeryl wraps it in.
+   */
+  def sqlException(e: Throwable) : Option[java.sql.SQLException] = e match {
+    case null => None
+    case s: java.sql.SQLException => Some(s)
+    case _ => sqlException(e.getCause)
+  }
+  
+  /**
+   * A unique key was violated: MySQL error 1062, or the standard SQL state.
+   */
+  def isDuplicateKey(e: Throwable) : Boolean = 
+    sqlException(e) exists (s => s.getErrorCode == 1062 || s.getSQLState == "23505")
+  
+  /**
+   * The transaction lost a deadlock (MySQL error 1213) or timed out waiting
+   * for a lock (1205), and can simply be retried later.
+   */
+  def isLockConflict(e: Throwable) : Boolean = sqlException(e) exists (s => 
+    s.isInstanceOf[java.sql.SQLTransactionRollbackException] || 
+    s.getErrorCode == 1213 || s.getErrorCode == 1205)
+}
+
+/**
+ * One hash partition of a result set's input, for batches matched by several
+ * worker processes. owner is empty and leaseExpires zero when the partition
+ * is not leased.
+ */
+class BatchMatchPartition(val batchMatchResultSetId: Long,
+                          val partitionNo: Int,
+                          val owner: String,
+                          val leaseExpires: Long,
+                          val done: Boolean)
+    extends KeyedEntity[Long] {
+  
+    val id : Long = 0
+}
                            
                            
 class BatchMatchSchemaBase extends Schema {
     val matchConfigurations = table[MatchConfiguration]("sgrmatchconfiguration")
     val resultSets = table[BatchMatchResultSet]("sgrbatchmatchresultset")
     val items = table[BatchMatchResultItem]("sgrbatchmatchresultitem")
+    val partitions = table[BatchMatchPartition]("sgrbatchmatchpartition")
+    val histogramBins = table[ScoreHistogramBin]("sgrbatchmatchhistogram")
+    val sketches = table[ScoreSketchRow]("sgrbatchmatchsketch")
     
     override def applyDefaultForeignKeyPolicy(foreignKeyDeclaration: ForeignKeyDeclaration) =
       foreignKeyDeclaration.constrainReference
@@ -166,6 +552,24 @@ class BatchMatchSchemaBase extends Schema {
     
     setToItems.foreignKeyDeclaration.constrainReference(onDelete cascade)
     
+    val setToPartitions =
+      oneToManyRelation(resultSets, partitions).
+      via((s, p) => s.id === p.batchMatchResultSetId)
+    
+    setToPartitions.foreignKeyDeclaration.constrainReference(onDelete cascade)
+    
+    val setToHistogramBins =
+      oneToManyRelation(resultSets, histogramBins).
+      via((s, h) => s.id === h.batchMatchResultSetId)
+    
+    setToHistogramBins.foreignKeyDeclaration.constrainReference(onDelete cascade)
+    
+    val setToSketches =
+      oneToManyRelation(resultSets, sketches).
+      via((s, k) => s.id === k.batchMatchResultSetId)
+    
+    setToSketches.foreignKeyDeclaration.constrainReference(onDelete cascade)
+    
     val matchConfigurationToResultSets =
       oneToManyRelation(matchConfigurations, resultSets).
       via((mc, rs) => mc.id === rs.matchConfigurationId)
@@ -179,16 +583,111 @@ class BatchMatchSchemaBase extends Schema {
       
     on(resultSets)(s => declare(
         s.query is(dbType("text")),
-        s.remarks is(dbType("text"))
+        s.remarks is(dbType("text")),
+        s.queryFingerprint is(indexed, dbType("varchar(40)"))
+    ))
+    
+    on(items)(i => declare(
+        columns(i.batchMatchResultSetId, i.maxScore, i.id) are(indexed),
+        columns(i.batchMatchResultSetId, i.matchedId) are(indexed)
+    ))
+    
+    on(histogramBins)(h => declare(
+        columns(h.batchMatchResultSetId, h.bin) are(unique)
+    ))
+    
+    on(sketches)(k => declare(
+        k.scores is(dbType("mediumblob")),
+        k.qTimes is(dbType("mediumblob"))
+    ))
+    
+    on(partitions)(p => declare(
+        columns(p.batchMatchResultSetId, p.partitionNo) are(unique)
     ))
 }
 
 object BatchMatchSchema extends BatchMatchSchemaBase
 
+/**
+ * Keeps up to maxIdle connections open between transactions. Connections are
+ * handed out wrapped so that closing them returns them to the pool.
+ */
+class ConnectionPool(conn: Function[AnyRef, java.sql.Connection], val maxIdle: Int) {
+  private val idle = new LinkedBlockingQueue[Connection](maxIdle)
+  
+  def borrow() : Connection = {
+    var c = idle.poll
+    while (c != null && !usable(c)) {
+      closeQuietly(c)
+      c = idle.poll
+    }
+    wrap(if (c != null) c else conn.apply(null))
+  }
+  
+  def close() : Unit = {
+    var c = idle.poll
+    while (c != null) {
+      closeQuietly(c)
+      c = idle.poll
+    }
+  }
+  
+  private def giveBack(c: Connection) : Unit = {
+    val ok = try {
+      if (!c.getAutoCommit) {
+        c.rollback
+        c.setAutoCommit(true)
+      }
+      true
+    } catch {
+      case e: java.sql.SQLException => false
+    }
+    if (!ok || !idle.offer(c)) closeQuietly(c)
+  }
+  
+  private def usable(c: Connection) = try { c.isValid(2) } catch { case e: java.sql.SQLException => false }
+  
+  private def closeQuietly(c: Connection) = try { c.close } catch { case e: java.sql.SQLException => }
+  
+  private def wrap(c: Connection) : Connection = 
+    Proxy.newProxyInstance(classOf[Connection].getClassLoader, Array[Class[_]](classOf[Connection]),
+      new InvocationHandler {
+        private var closed = false
+        
+        def invoke(proxy: AnyRef, m: Method, args: Array[AnyRef]) : AnyRef = m.getName match {
+          case "close" => 
+            if (!closed) { closed = true; giveBack(c) }
+            null
+          case "isClosed" => java.lang.Boolean.valueOf(closed || c.isClosed)
+          case _ =>
+            if (closed) throw new java.sql.SQLException("connection has been returned to the pool")
+            try {
+              if (args == null) m.invoke(c) else m.invoke(c, args: _*)
+            } catch {
+              case e: InvocationTargetException => throw e.getCause
+            }
+        }
+      }).asInstanceOf[Connection]
+}
+
 object DataModel {
-  def startDbSession(conn: Function[AnyRef, java.sql.Connection]) : Unit = {
+  val defaultPoolSize = 8
+  
+  private var pool : Option[ConnectionPool] = None
+  
+  def startDbSession(conn: Function[AnyRef, java.sql.Connection]) : Unit = 
+    startDbSession(conn, defaultPoolSize)
+  
+  /**
+   * Each transaction gets its own session, but the connections behind the
+   * sessions are reused through a pool of up to poolSize idle connections.
+   */
+  def startDbSession(conn: Function[AnyRef, java.sql.Connection], poolSize: Int) : Unit = synchronized {
+    pool.foreach(_.close)
+    val connections = new ConnectionPool(conn, poolSize)
+    pool = Some(connections)
     SessionFactory.concreteFactory =  Some(() => {
-      val session = Session.create(conn.apply(null),  new org.squeryl.adapters.MySQLInnoDBAdapter)
+      val session = Session.create(connections.borrow,  new org.squeryl.adapters.MySQLInnoDBAdapter)
 //      session.setLogger(Console.println(_))
       session
     })
@@ -200,7 +699,7 @@ object DataModel {
   def persistMatchConfiguration(name: String, remarks: String, matcherFactory: SGRMatcher.Factory) : 
       MatchConfiguration = transaction {
     val matcherConfig = new MatchConfiguration(name, remarks,
-                                               matcherFactory.serverUrl, 
+                                               matcherFactory.getLocation, 
                                                matcherFactory.nRows,
                                                matcherFactory.boostInterestingTerms,
                                                matcherFactory.similarityFields,
@@ -221,7 +720,7 @@ object DataModel {
     mf.filterQuery = (xml \ "filterQuery").text
     mf.nRows = Integer.valueOf((xml \ "nRows").text)
     mf.queryFields = (xml \ "queryFields").text
-    mf.serverUrl = (xml \ "serverUrl").text
+    mf.setLocation((xml \ "serverUrl").text)
     mf.similarityFields = (xml \ "similarityFields").text
     mf
   }
@@ -254,6 +753,7 @@ object DataModel {
           val dbTbId = if (dbTableId.eq(null)) None else Some(dbTableId : Int)
           val rs = new BatchMatchResultSet(name, "", matcher.getBaseQuery.toString, rsid, 
               dbTbId, matchConfigId)
+          rs.queryFingerprint = matcher.getQueryFingerprint
           BatchMatchSchema.resultSets.insert(rs)
       }
   
@@ -261,6 +761,113 @@ object DataModel {
     from(BatchMatchSchema.resultSets)(select(_)).toList
   }
   
+  /**
+   * The result sets produced with the same query fingerprint against the
+   * same server as matcher, whose items are what matching again would give.
+   */
+  def findCompatibleResultSets(matcher: SGRMatcher) : java.util.List[BatchMatchResultSet] = {
+    val fingerprint = matcher.getQueryFingerprint
+    val serverUrl = matcher.serverUrl
+    transaction {
+      from(BatchMatchSchema.resultSets, BatchMatchSchema.matchConfigurations)((s, mc) => 
+        where(s.queryFingerprint === fingerprint and s.matchConfigurationId === mc.id and
+              mc.serverUrl === serverUrl) 
+        select(s)).toList
+    }
+  }
+  
+  /**
+   * The fingerprint of a stored query, as matched without a prefilter.
+   */
+  def queryFingerprintOf(query: String) : String = 
+    Fingerprints.of(SolrRequestParsers.parseQueryString(query))
+  
+  /**
+   * Bring a database created by an earlier version up to date: create the
+   * histogram, sketch and partition tables and the item indexes if they are
+   * missing, add the query fingerprint column and its index, and fill in 
+   * the fingerprints of existing result sets from their stored queries. 
+   * Those are taken to have been matched without a prefilter. Running it
+   * again, or on a current database, changes nothing.
+   */
+  def upgradeSchema() : Unit = {
+    val table = BatchMatchSchema.resultSets.name
+    transaction {
+      val references = "foreign key (batchMatchResultSetId) references " + table + 
+                       " (id) on delete cascade"
+      createTableIfMissing(BatchMatchSchema.histogramBins.name, 
+          "batchMatchResultSetId bigint not null", "bin int not null", "nItems bigint not null",
+          "unique (batchMatchResultSetId, bin)", references)
+      createTableIfMissing(BatchMatchSchema.sketches.name, 
+          "batchMatchResultSetId bigint not null", "scores mediumblob not null", 
+          "qTimes mediumblob not null", references)
+      createTableIfMissing(BatchMatchSchema.partitions.name, 
+          "batchMatchResultSetId bigint not null", "partitionNo int not null", 
+          "owner varchar(128) not null", "leaseExpires bigint not null", "done boolean not null",
+          "unique (batchMatchResultSetId, partitionNo)", references)
+      
+      val items = BatchMatchSchema.items.name
+      createIndexIfMissing(items, items + "_setScore", "batchMatchResultSetId", "maxScore", "id")
+      createIndexIfMissing(items, items + "_setMatchedId", "batchMatchResultSetId", "matchedId")
+    }
+    transaction {
+      val columns = Session.currentSession.connection.getMetaData.getColumns(null, null, table, "queryFingerprint")
+      val present = try columns.next finally columns.close
+      if (!present) {
+        Sql.update("alter table " + table + " add column queryFingerprint varchar(40) not null default ''")
+        Sql.update("create index " + table + "_queryFingerprint on " + table + " (queryFingerprint)")
+      }
+    }
+    // A page of result sets is filled in per transaction, in one batch.
+    var lastId = 0L
+    var done = false
+    while (!done) transaction {
+      val unset = from(BatchMatchSchema.resultSets)(s => 
+        where(s.queryFingerprint === "" and (s.id gt lastId)) select(s) 
+        orderBy(s.id asc)).page(0, 500).toList
+      if (unset.isEmpty) done = true
+      else {
+        val stmt = Session.currentSession.connection.prepareStatement(
+            "update " + table + " set queryFingerprint = ? where id = ?")
+        try {
+          for (s <- unset) {
+            stmt.setString(1, queryFingerprintOf(s.query))
+            stmt.setLong(2, s.id)
+            stmt.addBatch()
+          }
+          stmt.executeBatch()
+        } finally {
+          stmt.close()
+        }
+        lastId = unset.last.id
+      }
+    }
+  }
+  
+  private def createTableIfMissing(table: String, columns: String*) : Unit = 
+    Sql.update("create table if not exists " + table + 
+               " (id bigint not null primary key auto_increment, " + columns.mkString(", ") + 
+               ") engine=InnoDB")
+  
+  /**
+   * Create the index unless the table already has one on the same columns,
+   * whatever its name.
+   */
+  private def createIndexIfMissing(table: String, name: String, columns: String*) : Unit = {
+    val info = Session.currentSession.connection.getMetaData.getIndexInfo(null, null, table, false, false)
+    val indexes = new scala.collection.mutable.HashMap[String, List[(Int, String)]]
+    try while (info.next) {
+      val index = info.getString("INDEX_NAME")
+      if (index != null) indexes(index) = 
+        (info.getInt("ORDINAL_POSITION"), info.getString("COLUMN_NAME").toLowerCase(Locale.ROOT)) :: 
+        indexes.getOrElse(index, Nil)
+    } finally info.close
+    
+    val wanted = columns.toList map (_.toLowerCase(Locale.ROOT))
+    if (!(indexes.values exists (c => (c sortBy (_._1) map (_._2)) == wanted)))
+      Sql.update("create index " + name + " on " + table + " (" + columns.mkString(", ") + ")")
+  }
+  
   def getBatchMatchResultSetsFor(recordSetId: java.lang.Long, dbTableId : java.lang.Integer) 
       : java.util.List[BatchMatchResultSet] = transaction {
     
@@ -286,14 +893,82 @@ class AccumulateResults(val matcher : SGRMatcher,
   if (!matcher.sameQueryAs(resultSet.query))
     throw new IllegalArgumentException("cannot resume batchmatch with inconsistent query");
   
-  override def addResult(result : MatchResults) : Unit = transaction {
-    val item = new BatchMatchResultItem(resultSet.id, result.matchedId, result.qTime, result.maxScore)
-    resultSet.items.associate(item)
+  // Sketches of the results added since a sketch row was last saved.
+  private var pendingScores = new QuantileSketch
+  private var pendingQTimes = new QuantileSketch
+  private var lastSketchSaved = System.currentTimeMillis
+  
+  override def addResult(result : MatchResults) : Unit = {
+    transaction {
+      val item = new BatchMatchResultItem(resultSet.id, result.matchedId, result.qTime, result.maxScore)
+      resultSet.items.associate(item)
+      ScoreHistogram.add(List(item))
+    }
+    val due = synchronized {
+      pendingScores.update(result.maxScore)
+      pendingQTimes.update(result.qTime)
+      pendingScores.getN >= AccumulateResults.sketchEvery || 
+        System.currentTimeMillis - lastSketchSaved >= AccumulateResults.sketchMillis
+    }
+    if (due) saveSketches()
   }
   
-  override def getCompletedIds() : ImmutableSet[String] = transaction {
-    val completedIds = from(resultSet.items)(item => select(item.matchedId))
-    ImmutableSet.copyOf(completedIds.toIterator)
+  /**
+   * Save the sketches of the results added since the last save. Call when 
+   * the batch ends so that the stored sketches cover every item; otherwise
+   * they are saved every sketchEvery results or sketchMillis.
+   */
+  def flush() : Unit = saveSketches()
+  
+  private def saveSketches() : Unit = {
+    val (scores, qTimes) = synchronized {
+      val saved = (pendingScores, pendingQTimes)
+      pendingScores = new QuantileSketch
+      pendingQTimes = new QuantileSketch
+      lastSketchSaved = System.currentTimeMillis
+      saved
+    }
+    if (scores.getN > 0) {
+      transaction { ScoreSketches.save(resultSet.id, scores, qTimes) }
+      ScoreSketches.compactIfNeeded(resultSet.id)
+    }
+  }
+  
+  override def getCompletedIds() : CompletedIds = AccumulateResults.completedIds(resultSet)
+  
+  /**
+   * Copy the results for those of ids already matched in any compatible 
+   * result set, so that they count as completed and are not matched again.
+   * Where several sets have results for an id the highest scoring is used.
+   * Call before matching starts.
+   * @return the number of results copied.
+   */
+  def seedFromCompatible(ids: java.lang.Iterable[String]) : Int = {
+    val sources = DataModel.findCompatibleResultSets(matcher) map (_.id) filter (_ != resultSet.id)
+    if (sources.isEmpty) 0
+    else (ids.grouped(AccumulateResults.seedChunkSize) map (seedChunk(sources.toList, _))).sum
+  }
+  
+  private def seedChunk(sources: List[Long], ids: Iterable[String]) : Int = {
+    val copied = transaction {
+      val present = from(BatchMatchSchema.items)(i => 
+        where(i.batchMatchResultSetId === resultSet.id and (i.matchedId in ids)) select(i.matchedId)).toSet
+      val found = from(BatchMatchSchema.items)(i => 
+        where((i.batchMatchResultSetId in sources) and (i.matchedId in ids)) select(i)).toList
+      val items = (found filterNot (i => present(i.matchedId)) groupBy (_.matchedId) map { 
+        case (id, candidates) => 
+          val best = candidates maxBy (_.maxScore)
+          new BatchMatchResultItem(resultSet.id, id, best.qTime, best.maxScore)
+      }).toList
+      if (!items.isEmpty) {
+        BatchMatchSchema.items.insert(items)
+        ScoreHistogram.add(items)
+        ScoreSketches.add(items)
+      }
+      items.size
+    }
+    if (copied > 0) ScoreSketches.compactIfNeeded(resultSet.id)
+    copied
   }
   
   override def nCompleted() : Int = {
@@ -307,6 +982,392 @@ class AccumulateResults(val matcher : SGRMatcher,
 }
 
 
+object AccumulateResults {
+  val idPageSize = 10000
+  val seedChunkSize = 1000
+  val sketchEvery = 1000
+  val sketchMillis = 5000L
+  
+  /**
+   * Reads the ids in pages by item id, so that a large result set is never
+   * held in memory or in one transaction. Only the ids that include accepts
+   * are kept.
+   */
+  def completedIds(resultSet: BatchMatchResultSet, 
+                   include: String => Boolean = _ => true) : CompletedIdSet = {
+    val completedIds = new CompletedIdSet
+    val pages = new PagedIterator[BatchMatchResultItem](idPageSize, 
+      (last, n) => transaction {
+        val after = last map (_.id) getOrElse 0L
+        from(BatchMatchSchema.items)(item => 
+          where(item.batchMatchResultSetId === resultSet.id and (item.id gt after)) 
+          select(item) 
+          orderBy(item.id asc)).page(0, n).toList
+      })
+    while (pages.hasNext) {
+      val id = pages.next.matchedId
+      if (include(id)) completedIds.add(id)
+    }
+    completedIds
+  }
+}
+
+/**
+ * Buffers result items and writes them in one transaction per batch of 
+ * flushSize items, or after flushMillis, whichever comes first. Squeryl sends
+ * each batch as a single JDBC batch, which the MySQL driver turns into a 
+ * multi-row insert when the connection has rewriteBatchedStatements=true.
+ * close() must be called to write the final partial batch.
+ */
+class BatchingAccumulateResults(matcher : SGRMatcher,
+                                resultSet: BatchMatchResultSet,
+                                val flushSize: Int,
+                                val flushMillis: Long) 
+                                extends AccumulateResults(matcher, resultSet) {
+  
+  def this(matcher : SGRMatcher, resultSet: BatchMatchResultSet) = 
+    this(matcher, resultSet, 1000, 5000)
+  
+  private val buffer = new java.util.ArrayList[BatchMatchResultItem](flushSize)
+  private var lastFlush = System.currentTimeMillis
+  @volatile private var failure : Option[Throwable] = None
+  
+  private val timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory {
+    def newThread(r: Runnable) = {
+      val t = new Thread(r, "sgr-result-flush")
+      t.setDaemon(true)
+      t
+    }
+  })
+  
+  timer.scheduleWithFixedDelay(new Runnable {
+    def run() = try {
+      val due = BatchingAccumulateResults.this.synchronized { 
+        System.currentTimeMillis - lastFlush >= flushMillis 
+      }
+      if (due) flush()
+    } catch {
+      case e: Throwable => failure = Some(e)
+    }
+  }, flushMillis, flushMillis, TimeUnit.MILLISECONDS)
+  
+  override def addResult(result : MatchResults) : Unit = {
+    checkFailure()
+    val full = synchronized {
+      buffer.add(new BatchMatchResultItem(resultSet.id, result.matchedId, 
+                                          result.qTime, result.maxScore))
+      buffer.size >= flushSize
+    }
+    if (full) flush()
+  }
+  
+  override def flush() : Unit = {
+    val items = synchronized {
+      val pending = buffer.toList
+      buffer.clear
+      lastFlush = System.currentTimeMillis
+      pending
+    }
+    if (!items.isEmpty) {
+      transaction { 
+        BatchMatchSchema.items.insert(items)
+        ScoreHistogram.add(items)
+        ScoreSketches.add(items)
+      }
+      ScoreSketches.compactIfNeeded(resultSet.id)
+    }
+  }
+  
+  def close() : Unit = {
+    timer.shutdown
+    flush()
+    checkFailure()
+  }
+  
+  override def getCompletedIds() : CompletedIds = {
+    flush()
+    super.getCompletedIds
+  }
+  
+  override def nCompleted() : Int = {
+    val buffered = synchronized { buffer.size }
+    super.nCompleted + buffered
+  }
+  
+  private def checkFailure() : Unit = failure match {
+    case Some(e) => throw new RuntimeException("writing result items failed", e)
+    case None =>
+  }
+}
+
+
+/**
+ * Partition leases kept in the database alongside the result set, so that
+ * workers sharing the result set need nothing else in common. Every change
+ * is a single conditional update, so two workers can never both succeed in
+ * claiming the same partition. Expiry times are compared with each worker's
+ * clock, which should agree to well within the lease duration.
+ */
+class DbPartitionLeases(val resultSet: BatchMatchResultSet, n: Int) extends PartitionLeases {
+  import BatchMatchSchema.partitions
+  
+  createPartitions()
+  
+  private def createPartitions() : Unit = {
+    val existing = transaction {
+      from(partitions)(p => where(p.batchMatchResultSetId === resultSet.id) select(p.partitionNo)).toSet
+    }
+    if (!existing.isEmpty && existing.size != n)
+      throw new IllegalArgumentException("result set is already split into " + existing.size + " partitions")
+    
+    val missing = (0 until n) filterNot existing.contains
+    if (!missing.isEmpty) try {
+      transaction {
+        partitions.insert(missing map (new BatchMatchPartition(resultSet.id, _, "", 0L, false)))
+      }
+    } catch {
+      // Another worker created them at the same time.
+      case e: RuntimeException if Sql.isDuplicateKey(e) => 
+    }
+    
+    val created : Long = transaction {
+      from(partitions)(p => where(p.batchMatchResultSetId === resultSet.id) compute(count))
+    }
+    if (created != n)
+      throw new IllegalStateException("result set has " + created + " partitions, expected " + n)
+  }
+  
+  override def nPartitions() = n
+  
+  override def claim(owner: String, leaseMillis: Long) : Int = {
+    val now = System.currentTimeMillis
+    val candidates = transaction {
+      from(partitions)(p => 
+        where(p.batchMatchResultSetId === resultSet.id and p.done === false and (p.leaseExpires lt now))
+        select(p.partitionNo)
+        orderBy(p.partitionNo)).toList
+    }
+    candidates find { partitionNo =>
+      transaction {
+        update(partitions)(p => 
+          where(p.batchMatchResultSetId === resultSet.id and p.partitionNo === partitionNo and 
+                p.done === false and (p.leaseExpires lt now))
+          set(p.owner := owner, p.leaseExpires := now + leaseMillis))
+      } == 1
+    } getOrElse -1
+  }
+  
+  override def renew(partition: Int, owner: String, leaseMillis: Long) : Boolean = {
+    val now = System.currentTimeMillis
+    transaction {
+      update(partitions)(p => 
+        where(p.batchMatchResultSetId === resultSet.id and p.partitionNo === partition and 
+              p.owner === owner and p.done === false and (p.leaseExpires gte now))
+        set(p.leaseExpires := now + leaseMillis))
+    } == 1
+  }
+  
+  override def complete(partition: Int, owner: String) : Unit = {
+    val updated = transaction {
+      update(partitions)(p => 
+        where(p.batchMatchResultSetId === resultSet.id and p.partitionNo === partition and 
+              p.owner === owner and p.done === false)
+        set(p.done := true, p.leaseExpires := 0L))
+    }
+    if (updated != 1) 
+      throw new IllegalStateException("partition " + partition + " is not leased to " + owner)
+  }
+  
+  override def release(partition: Int, owner: String) : Unit = transaction {
+    update(partitions)(p => 
+      where(p.batchMatchResultSetId === resultSet.id and p.partitionNo === partition and 
+            p.owner === owner and p.done === false)
+      set(p.owner := "", p.leaseExpires := 0L))
+  }
+  
+  override def allComplete() : Boolean = transaction {
+    val remaining : Long = from(partitions)(p => 
+      where(p.batchMatchResultSetId === resultSet.id and p.done === false) compute(count))
+    remaining == 0
+  }
+}
+
+/**
+ * Sends the results of every partition to the shared result set, batching
+ * the inserts. nPartitions must be the number the batch's leases split the
+ * input into.
+ */
+class ResultSetAccumulators(val matcher: SGRMatcher, val resultSet: BatchMatchResultSet,
+                            val nPartitions: Int) 
+    extends PartitionedBatchRun.Accumulators {
+  
+  // Read when the partition is opened, so that a partition taken over from 
+  // a dead worker resumes after everything that worker wrote.
+  override def open(partition: Int) = {
+    val completedIds = AccumulateResults.completedIds(resultSet, 
+        PartitionedBatchRun.partitionOf(_, nPartitions) == partition)
+    new BatchingAccumulateResults(matcher, resultSet) {
+      override def getCompletedIds() : CompletedIds = completedIds
+    }
+  }
+  
+  override def close(partition: Int, accumulator: BatchMatchResultAccumulator) = 
+    accumulator.asInstanceOf[BatchingAccumulateResults].close()
+}
+
+
+/**
+ * Moves a result set, with its match configuration, between databases in a
+ * gzipped binary format: a header with the configuration and result set 
+ * properties followed by the items. Items are read a page at a time and
+ * inserted in batches, so memory use does not grow with the result set.
+ */
+object ResultSetTransfer {
+  private val magic = 0x53475258 // "SGRX"
+  private val format = 2
+  private val pageSize = 5000
+  
+  def exportTo(resultSet: BatchMatchResultSet, file: File) : Long = {
+    val out = new FileOutputStream(file)
+    try exportTo(resultSet, out) finally out.close
+  }
+  
+  /**
+   * Write the result set to out, which is left open.
+   * @return the number of items written.
+   */
+  def exportTo(resultSet: BatchMatchResultSet, out: OutputStream) : Long = {
+    val buffered = new BufferedOutputStream(out, 1 << 16)
+    val gzip = new GZIPOutputStream(buffered)
+    val data = new DataOutputStream(gzip)
+    data.writeInt(magic)
+    data.writeInt(format)
+    
+    val mc = resultSet.getMatchConfiguration
+    writeString(data, mc.name)
+    writeString(data, mc.remarks)
+    writeString(data, mc.serverUrl)
+    data.writeInt(mc.nRows)
+    data.writeBoolean(mc.boostInterestingTerms)
+    writeString(data, mc.similarityFields)
+    writeString(data, mc.queryFields)
+    writeString(data, mc.filterQuery)
+    
+    writeString(data, resultSet.name)
+    writeString(data, resultSet.remarks)
+    writeString(data, resultSet.query)
+    writeString(data, resultSet.queryFingerprint)
+    data.writeLong(resultSet.recordSetID getOrElse -1L)
+    data.writeInt(resultSet.dbTableId getOrElse -1)
+    
+    var n = 0L
+    val items = resultSet.iterateItems(pageSize)
+    while (items.hasNext) {
+      val item = items.next
+      data.writeBoolean(true)
+      writeString(data, item.matchedId)
+      data.writeInt(item.qTime)
+      data.writeFloat(item.maxScore)
+      n += 1
+    }
+    data.writeBoolean(false)
+    data.flush
+    gzip.finish
+    // finish writes the trailer to the buffer but does not flush it.
+    buffered.flush
+    n
+  }
+  
+  def importFrom(file: File) : BatchMatchResultSet = {
+    val in = new FileInputStream(file)
+    try importFrom(in) finally in.close
+  }
+  
+  /**
+   * Create a result set from an export. The match configuration is reused
+   * if one with the same name and settings exists and created otherwise.
+   * If the import fails the new result set is deleted.
+   */
+  def importFrom(in: InputStream) : BatchMatchResultSet = {
+    val data = new DataInputStream(new GZIPInputStream(new BufferedInputStream(in, 1 << 16)))
+    if (data.readInt != magic) throw new IllegalArgumentException("not a result set export")
+    val version = data.readInt
+    if (version < 1 || version > format) 
+      throw new IllegalArgumentException("unknown export format: " + version)
+    
+    val mc = new MatchConfiguration(readString(data), readString(data), readString(data), 
+                                    data.readInt, data.readBoolean, readString(data), 
+                                    readString(data), readString(data))
+    val mcId = findOrInsert(mc)
+    
+    val name = readString(data)
+    val remarks = readString(data)
+    val query = readString(data)
+    // Format 1 exports predate fingerprints.
+    val fingerprint = if (version >= 2) readString(data) else ""
+    val recordSetID = Some(data.readLong) filter (_ >= 0)
+    val dbTableId = Some(data.readInt) filter (_ >= 0)
+    val resultSet = transaction {
+      val rs = new BatchMatchResultSet(name, remarks, query, recordSetID, dbTableId, mcId)
+      rs.queryFingerprint = if (fingerprint == "") DataModel.queryFingerprintOf(query) else fingerprint
+      BatchMatchSchema.resultSets.insert(rs)
+    }
+    
+    val batch = new java.util.ArrayList[BatchMatchResultItem](pageSize)
+    def insertBatch() : Unit = if (!batch.isEmpty) {
+      transaction {
+        BatchMatchSchema.items.insert(batch.toList)
+        ScoreHistogram.add(batch)
+        ScoreSketches.add(batch)
+      }
+      ScoreSketches.compactIfNeeded(resultSet.id)
+      batch.clear
+    }
+    try {
+      while (data.readBoolean) {
+        batch.add(new BatchMatchResultItem(resultSet.id, readString(data), data.readInt, data.readFloat))
+        if (batch.size >= pageSize) insertBatch()
+      }
+      insertBatch()
+    } catch {
+      case e: Throwable =>
+        // Its items, histogram and sketches go with it.
+        resultSet.delete()
+        throw e
+    }
+    resultSet
+  }
+  
+  private def findOrInsert(mc: MatchConfiguration) : Long = transaction {
+    val same = from(BatchMatchSchema.matchConfigurations)(c => 
+      where(c.name === mc.name) select(c)) find { c =>
+        c.serverUrl == mc.serverUrl && c.nRows == mc.nRows && 
+        c.boostInterestingTerms == mc.boostInterestingTerms &&
+        c.similarityFields == mc.similarityFields && c.queryFields == mc.queryFields &&
+        c.filterQuery == mc.filterQuery
+      }
+    (same getOrElse BatchMatchSchema.matchConfigurations.insert(mc)).id
+  }
+  
+  // DataOutputStream.writeUTF is limited to 64K, which a query can exceed.
+  private def writeString(out: DataOutputStream, s: String) : Unit = 
+    if (s == null) out.writeInt(-1)
+    else {
+      val bytes = s.getBytes("UTF-8")
+      out.writeInt(bytes.length)
+      out.write(bytes)
+    }
+  
+  private def readString(in: DataInputStream) : String = in.readInt match {
+    case -1 => null
+    case n => 
+      val bytes = new Array[Byte](n)
+      in.readFully(bytes)
+      new String(bytes, "UTF-8")
+  }
+}
+
+
 object CreateSchema {
   def main(args : Array[String]) : Unit = {
     DataModel.startDbSession(new Function[AnyRef, java.sql.Connection] {
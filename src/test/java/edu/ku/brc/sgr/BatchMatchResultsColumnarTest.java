@@ -0,0 +1,136 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+/**
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class BatchMatchResultsColumnarTest extends TestCase
+{
+    private static final String EXPLAINED = 
+        "2.0 = (MATCH) sum of:\n" +
+        "  1.5 = (MATCH) weight(collectors:smith in 7), product of:\n" +
+        "  0.5 = (MATCH) weight(location:kansas in 7), product of:\n";
+    
+    private File file;
+    private SGRMatcher matcher;
+    
+    @Override
+    protected void setUp() throws Exception
+    {
+        file = File.createTempFile("sgr", ".col");
+        file.delete();
+        matcher = SGRMatcher.getFactory().build();
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        file.delete();
+    }
+    
+    private void writeResults() throws IOException
+    {
+        final BatchMatchResultsColumnar results = 
+            new BatchMatchResultsColumnar(file.getPath(), matcher, 2);
+        results.addResult(new MatchResults("1", 3, 2.0f, ImmutableList.of(
+                new Match(SGRRecord.builder("7").build(), 2.0f, EXPLAINED))));
+        results.addResult(new MatchResults("2", 4, 0.9f, 
+                new String[] { "8", "9" }, new float[] { 0.9f, 0.2f }));
+        results.addResult(new MatchResults("3", 5, 0.0f, ImmutableList.<Match>of()));
+        assertEquals(3, results.nCompleted());
+        results.close();
+    }
+    
+    private List<String> scan(float minScore) throws IOException
+    {
+        final List<String> rows = Lists.newArrayList();
+        final ColumnarMatchReader reader = new ColumnarMatchReader(file);
+        try
+        {
+            reader.scan(minScore, new ColumnarMatchReader.Visitor()
+            {
+                @Override
+                public void visit(String matchedId, int qTime, float maxScore, String matchId,
+                                  float score, float[] contributions)
+                {
+                    final StringBuilder row = new StringBuilder();
+                    row.append(matchedId).append(' ').append(qTime).append(' ').append(maxScore)
+                       .append(' ').append(matchId).append(' ').append(score);
+                    for (float c : contributions) row.append(' ').append(c);
+                    rows.add(row.toString());
+                }
+            });
+            assertEquals(ImmutableList.of("collectors", "location"), reader.getFieldNames());
+        } finally
+        {
+            reader.close();
+        }
+        return rows;
+    }
+    
+    public void testRoundTrip() throws IOException
+    {
+        writeResults();
+        assertEquals(ImmutableList.of("1 3 2.0 7 2.0 1.5 0.5", 
+                                      "2 4 0.9 8 0.9 0.0 0.0", 
+                                      "2 4 0.9 9 0.2 0.0 0.0"), 
+                     scan(0.0f));
+    }
+    
+    public void testScanSkipsMatchesBelowThreshold() throws IOException
+    {
+        writeResults();
+        assertEquals(ImmutableList.of("1 3 2.0 7 2.0 1.5 0.5", "2 4 0.9 8 0.9 0.0 0.0"), 
+                     scan(0.5f));
+    }
+    
+    public void testResumeDropsPartialBlock() throws IOException
+    {
+        writeResults();
+        final long complete = file.length();
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(complete);
+        raf.writeInt(1000);
+        raf.write(new byte[10]);
+        raf.close();
+        
+        final BatchMatchResultsColumnar resumed = 
+            new BatchMatchResultsColumnar(file.getPath(), matcher, 2);
+        assertTrue(resumed.resuming);
+        assertEquals(3, resumed.nCompleted());
+        assertTrue(resumed.getCompletedIds().contains("3"));
+        assertEquals(complete, file.length());
+        resumed.close();
+    }
+}
@@ -0,0 +1,158 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+/**
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class BatchMatchResultsLogTest extends TestCase
+{
+    private File log;
+    private SGRMatcher matcher;
+    
+    @Override
+    protected void setUp() throws Exception
+    {
+        log = File.createTempFile("sgr", ".log");
+        log.delete();
+        matcher = SGRMatcher.getFactory().build();
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        log.delete();
+        new File(log.getPath() + ".idx").delete();
+    }
+    
+    private static MatchResults result(int id)
+    {
+        return new MatchResults(Integer.toString(id), id % 7, id / 10.0f, 
+                                ImmutableList.<Match>of());
+    }
+    
+    private BatchMatchResultsLog open(int checkpointEvery) throws IOException
+    {
+        return new BatchMatchResultsLog(log.getPath(), matcher, 10, 1000, checkpointEvery);
+    }
+    
+    public void testCountsEachIdOnceAcrossCheckpoints() throws IOException
+    {
+        final BatchMatchResultsLog results = open(100);
+        for (int i = 0; i < 250; i++) results.addResult(result(i));
+        
+        assertEquals(250, results.nCompleted());
+        assertTrue(results.getCompletedIds().contains("0"));
+        assertTrue(results.getCompletedIds().contains("249"));
+        assertFalse(results.getCompletedIds().contains("250"));
+        results.close();
+        assertEquals(250, results.nCompleted());
+    }
+    
+    public void testResumeReadsIndexAndTail() throws IOException
+    {
+        final BatchMatchResultsLog first = open(100);
+        for (int i = 0; i < 150; i++) first.addResult(result(i));
+        first.flush();
+        
+        final BatchMatchResultsLog resumed = open(100);
+        assertTrue(resumed.resuming);
+        assertEquals(150, resumed.nCompleted());
+        assertTrue(resumed.getCompletedIds().contains("42"));
+        assertTrue(resumed.getCompletedIds().contains("149"));
+        
+        resumed.addResult(result(150));
+        resumed.close();
+        assertEquals(151, open(100).nCompleted());
+    }
+    
+    public void testResumeTruncatesPartialRecord() throws IOException
+    {
+        final BatchMatchResultsLog first = open(1000);
+        for (int i = 0; i < 20; i++) first.addResult(result(i));
+        first.flush();
+        final long complete = log.length();
+        
+        final RandomAccessFile raf = new RandomAccessFile(log, "rw");
+        raf.seek(complete);
+        raf.writeInt(100);
+        raf.write(new byte[5]);
+        raf.close();
+        
+        final BatchMatchResultsLog resumed = open(1000);
+        assertEquals(20, resumed.nCompleted());
+        assertEquals(complete, log.length());
+    }
+    
+    public void testRejectsNegativeRecordLength() throws IOException
+    {
+        final BatchMatchResultsLog first = open(1000);
+        first.addResult(result(1));
+        first.flush();
+        
+        final RandomAccessFile raf = new RandomAccessFile(log, "rw");
+        raf.seek(raf.length());
+        raf.writeInt(-4);
+        raf.close();
+        
+        try
+        {
+            open(1000);
+            fail("negative record length accepted");
+        } catch (IOException e)
+        {
+            // expected
+        }
+    }
+    
+    public void testToTsv() throws IOException
+    {
+        final BatchMatchResultsLog results = open(1000);
+        results.addResult(result(12));
+        results.close();
+        
+        final File tsv = File.createTempFile("sgr", ".tsv");
+        try
+        {
+            BatchMatchResultsLog.toTsv(log, tsv);
+            final List<String> lines = Files.readLines(tsv, Charsets.UTF_8);
+            assertEquals(2, lines.size());
+            assertEquals(matcher.getBaseQuery().toString(), lines.get(0));
+            assertEquals("12\t5\t1.2", lines.get(1));
+        } finally
+        {
+            tsv.delete();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.common.params.MoreLikeThisParams;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+/**
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class LocalMatchIndexTest extends TestCase
+{
+    private static final String FIELDS = "collectors,location";
+    
+    private static SGRRecord record(String id, String collectors, String location)
+    {
+        return SGRRecord.builder(id).put("collectors", collectors).put("location", location).build();
+    }
+    
+    private static SolrQuery query(int rows)
+    {
+        final SolrQuery query = new SolrQuery();
+        query.setRows(rows);
+        query.set(MoreLikeThisParams.MIN_TERM_FREQ, 1);
+        query.set(MoreLikeThisParams.MIN_DOC_FREQ, 1);
+        return query;
+    }
+    
+    public void testScoresOneSharedTerm()
+    {
+        final LocalMatchIndex index = LocalMatchIndex.build(ImmutableList.of(
+                record("a", "Morse", ""), 
+                record("b", "Morse", ""), 
+                record("c", "Smith", ""), 
+                record("d", "Jones", "")), FIELDS, 1);
+        
+        final MatchResults results = index.indexedMatchable(0).doMatch(null, query(10));
+        assertEquals(1, results.size());
+        assertEquals("b", results.getMatchId(0));
+        
+        // idf² * √tf * field norm * coord, for a term in two of four records.
+        final float idf = (float) (1.0 + Math.log(4.0 / 3));
+        assertEquals(idf * idf, results.getScore(0), 1e-5f);
+    }
+    
+    public void testBestMatchFirst()
+    {
+        final LocalMatchIndex index = LocalMatchIndex.build(ImmutableList.of(
+                record("a", "Morse Smith", "Cherokee County"), 
+                record("b", "Morse", "Douglas County"), 
+                record("c", "Morse Smith", "Cherokee County"), 
+                record("d", "Jones", "Cherokee")), FIELDS, 2);
+        
+        final MatchResults results = index.indexedMatchable(0).doMatch(null, query(10));
+        assertEquals("c", results.getMatchId(0));
+        assertEquals(results.getScore(0), results.maxScore);
+        assertEquals(3, results.size());
+    }
+    
+    public void testTopRowsAreTheBestInOrder()
+    {
+        final List<SGRRecord> records = randomRecords(500);
+        final LocalMatchIndex index = LocalMatchIndex.build(records, FIELDS, 3);
+        for (int doc = 0; doc < records.size(); doc += 37)
+        {
+            final MatchResults all = index.indexedMatchable(doc).doMatch(null, query(records.size()));
+            final MatchResults top = index.indexedMatchable(doc).doMatch(null, query(5));
+            assertEquals(Math.min(5, all.size()), top.size());
+            for (int i = 0; i < top.size(); i++)
+            {
+                assertEquals(all.getScore(i), top.getScore(i));
+                if (i > 0) assertTrue(top.getScore(i - 1) >= top.getScore(i));
+            }
+            for (int i = 1; i < all.size(); i++)
+            {
+                assertTrue(all.getScore(i - 1) >= all.getScore(i));
+            }
+        }
+    }
+    
+    public void testBuildDoesNotDependOnThreads()
+    {
+        final List<SGRRecord> records = randomRecords(300);
+        final LocalMatchIndex one = LocalMatchIndex.build(records, FIELDS, 1);
+        final LocalMatchIndex several = LocalMatchIndex.build(records, FIELDS, 7);
+        assertEquals(one.toString(), several.toString());
+        for (int doc = 0; doc < records.size(); doc += 11)
+        {
+            final MatchResults a = one.indexedMatchable(doc).doMatch(null, query(10));
+            final MatchResults b = several.indexedMatchable(doc).doMatch(null, query(10));
+            assertEquals(a.size(), b.size());
+            for (int i = 0; i < a.size(); i++)
+            {
+                assertEquals(a.getMatchId(i), b.getMatchId(i));
+                assertEquals(a.getScore(i), b.getScore(i));
+            }
+        }
+    }
+    
+    public void testLowerCasesIndependentOfLocale()
+    {
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try
+        {
+            final LocalMatchIndex index = LocalMatchIndex.build(ImmutableList.of(
+                    record("a", "IVIE", ""), 
+                    record("b", "ivie", "")), FIELDS, 1);
+            final MatchResults results = index.indexedMatchable(0).doMatch(null, query(10));
+            assertEquals(1, results.size());
+            assertEquals("b", results.getMatchId(0));
+        } finally
+        {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+    
+    public void testExplainsPerField()
+    {
+        final LocalMatchIndex index = LocalMatchIndex.build(ImmutableList.of(
+                record("a", "Morse", "Cherokee"), 
+                record("b", "Morse", "Cherokee"), 
+                record("c", "Smith", "Douglas")), FIELDS, 1);
+        final SolrQuery query = query(10);
+        query.set("debugQuery", true);
+        
+        final MatchResults results = index.indexedMatchable(0).doMatch(null, query);
+        final Match match = results.getMatches().get(0);
+        assertTrue(match.fieldContribution("collectors") > 0.0f);
+        assertEquals(match.score, 
+                match.fieldContribution("collectors") + match.fieldContribution("location"), 1e-5f);
+    }
+    
+    private static List<SGRRecord> randomRecords(int n)
+    {
+        final String[] words = {"Morse", "Smith", "Jones", "Barkley", "Cherokee", "Douglas", 
+                                "County", "Creek", "River", "Lake"};
+        final Random random = new Random(17);
+        final List<SGRRecord> records = Lists.newArrayList();
+        for (int i = 0; i < n; i++)
+        {
+            records.add(record(Integer.toString(i), 
+                    words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                    words[random.nextInt(words.length)] + " " + random.nextInt(20)));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,96 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.File;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+/**
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class MatchResultsCacheTest extends TestCase
+{
+    private File directory;
+    
+    @Override
+    protected void setUp()
+    {
+        directory = Files.createTempDir();
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        delete(directory);
+    }
+    
+    private static void delete(File file)
+    {
+        final File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+    
+    private MatchResultsCache open()
+    {
+        return new MatchResultsCache(10, 60000, directory);
+    }
+    
+    public void testIdOnlyResultsSurviveDisk()
+    {
+        open().put("k:q", new MatchResults("a", 12, 2.5f, 
+                new String[] {"x", "y"}, new float[] {2.5f, 1.0f}));
+        
+        final MatchResults read = open().get("k:q", "b");
+        assertEquals("b", read.matchedId);
+        assertEquals(0, read.qTime);
+        assertFalse(read.hasRecords());
+        assertEquals(2, read.size());
+        assertEquals("y", read.getMatchId(1));
+        assertEquals(1.0f, read.getScore(1));
+        assertEquals(2.5f, read.maxScore);
+    }
+    
+    public void testRecordsSurviveDisk()
+    {
+        final SGRRecord record = SGRRecord.builder("x").put("collectors", "Morse").build();
+        open().put("k:q", new MatchResults("a", 12, 2.5f, ImmutableList.of(new Match(record, 2.5f, 
+                "2.5 = (MATCH) weight(collectors:morse in 1), product of:\n"))));
+        
+        final MatchResults read = open().get("k:q", "a");
+        assertTrue(read.hasRecords());
+        final Match match = read.getMatches().get(0);
+        assertEquals("x", match.match.id);
+        assertEquals(ImmutableList.of("Morse"), match.match.getFieldValues("collectors"));
+        assertEquals(2.5f, match.fieldContribution("collectors"));
+    }
+    
+    public void testMissOnUnknownKey()
+    {
+        assertNull(open().get("other:q", "a"));
+    }
+}
@@ -0,0 +1,163 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+/**
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class QuantileSketchTest extends TestCase
+{
+    private static final double[] QS = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+    
+    /**
+     * The values 0 to n - 1 in random order.
+     */
+    private static List<Float> shuffled(int n, long seed)
+    {
+        final List<Float> values = Lists.newArrayListWithCapacity(n);
+        for (int i = 0; i < n; i++) values.add((float) i);
+        Collections.shuffle(values, new Random(seed));
+        return values;
+    }
+    
+    private static QuantileSketch sketch(List<Float> values)
+    {
+        final QuantileSketch sketch = new QuantileSketch();
+        for (float v : values) sketch.update(v);
+        return sketch;
+    }
+    
+    /**
+     * Check the estimates for the values 0 to n - 1, whose exact q quantile
+     * is q * n.
+     */
+    private static void assertRankError(QuantileSketch sketch, int n, double epsilon)
+    {
+        final float[] estimates = sketch.getQuantiles(QS);
+        for (int j = 0; j < QS.length; j++)
+        {
+            assertEquals("quantile " + QS[j], QS[j], estimates[j] / n, epsilon);
+            assertEquals("rank of " + QS[j], QS[j], sketch.getRank((float) (QS[j] * n)), epsilon);
+        }
+    }
+    
+    public void testEmpty()
+    {
+        final QuantileSketch sketch = new QuantileSketch();
+        assertEquals(0, sketch.getN());
+        assertTrue(Float.isNaN(sketch.getQuantile(0.5)));
+        assertTrue(Double.isNaN(sketch.getRank(1.0f)));
+    }
+    
+    public void testExactWhileSmall()
+    {
+        final QuantileSketch sketch = sketch(shuffled(100, 1));
+        assertEquals(100, sketch.getRetained());
+        assertEquals(49.0f, sketch.getQuantile(0.5));
+        assertEquals(0.0f, sketch.getMin());
+        assertEquals(99.0f, sketch.getMax());
+    }
+    
+    public void testRankError()
+    {
+        final int n = 200000;
+        final QuantileSketch sketch = sketch(shuffled(n, 2));
+        assertEquals(n, sketch.getN());
+        assertTrue(sketch.getRetained() < 4 * sketch.k);
+        assertRankError(sketch, n, 0.02);
+        assertEquals(0.0f, sketch.getQuantile(0.0));
+        assertEquals(n - 1.0f, sketch.getQuantile(1.0));
+    }
+    
+    public void testRankErrorOnSortedInput()
+    {
+        final int n = 100000;
+        final List<Float> values = shuffled(n, 3);
+        Collections.sort(values);
+        assertRankError(sketch(values), n, 0.02);
+    }
+    
+    public void testMerge()
+    {
+        final int n = 100000;
+        final List<Float> values = shuffled(n, 4);
+        final QuantileSketch merged = new QuantileSketch();
+        for (List<Float> part : Lists.partition(values, 7919)) merged.merge(sketch(part));
+        
+        assertEquals(n, merged.getN());
+        assertEquals(0.0f, merged.getMin());
+        assertEquals(n - 1.0f, merged.getMax());
+        assertTrue(merged.getRetained() < 4 * merged.k);
+        assertRankError(merged, n, 0.02);
+    }
+    
+    public void testMergeEmpty()
+    {
+        final QuantileSketch sketch = sketch(shuffled(1000, 5));
+        final byte[] before = sketch.toBytes();
+        sketch.merge(new QuantileSketch());
+        assertTrue(Arrays.equals(before, sketch.toBytes()));
+    }
+    
+    public void testSerialization()
+    {
+        final QuantileSketch sketch = sketch(shuffled(50000, 6));
+        final QuantileSketch read = QuantileSketch.fromBytes(sketch.toBytes());
+        
+        assertEquals(sketch.k, read.k);
+        assertEquals(sketch.getN(), read.getN());
+        assertEquals(sketch.getRetained(), read.getRetained());
+        assertEquals(sketch.getMin(), read.getMin());
+        assertEquals(sketch.getMax(), read.getMax());
+        assertTrue(Arrays.equals(sketch.getQuantiles(QS), read.getQuantiles(QS)));
+        assertTrue(Arrays.equals(sketch.toBytes(), read.toBytes()));
+        
+        // A restored sketch keeps working.
+        read.update(-1.0f);
+        assertEquals(-1.0f, read.getMin());
+        assertEquals(sketch.getN() + 1, read.getN());
+    }
+    
+    public void testRejectsUnknownFormat()
+    {
+        final byte[] bytes = new QuantileSketch().toBytes();
+        bytes[0] = 99;
+        try
+        {
+            QuantileSketch.fromBytes(bytes);
+            fail("unknown format accepted");
+        } catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+}
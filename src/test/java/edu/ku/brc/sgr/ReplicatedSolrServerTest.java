@@ -0,0 +1,84 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.IOException;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.response.QueryResponse;
+
+import com.google.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+/**
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ReplicatedSolrServerTest extends TestCase
+{
+    public void testFailsOverToAnotherReplica() throws Exception
+    {
+        final StubSolrServer down = StubSolrServer.failing();
+        final StubSolrServer up = StubSolrServer.returning(3, StubSolrServer.docs("a", 1.0f));
+        final ReplicatedSolrServer server = 
+            new ReplicatedSolrServer(ImmutableList.of(down, up));
+        
+        for (int i = 0; i < 4; i++)
+        {
+            final QueryResponse resp = server.query(new SolrQuery("*:*"));
+            assertEquals("a", resp.getResults().get(0).getFieldValue("id"));
+        }
+        assertEquals(4, up.requests.size());
+        assertTrue(down.requests.size() > 0);
+        assertEquals(0, server.getOutstanding()[0]);
+        assertEquals(0, server.getOutstanding()[1]);
+    }
+    
+    public void testSpreadsLoadRoundRobin() throws Exception
+    {
+        final StubSolrServer a = StubSolrServer.returning(1, StubSolrServer.docs());
+        final StubSolrServer b = StubSolrServer.returning(1, StubSolrServer.docs());
+        final ReplicatedSolrServer server = new ReplicatedSolrServer(ImmutableList.of(a, b));
+        
+        for (int i = 0; i < 10; i++) server.query(new SolrQuery("*:*"));
+        assertEquals(5, a.requests.size());
+        assertEquals(5, b.requests.size());
+    }
+    
+    public void testFailsWhenEveryReplicaFails() throws IOException
+    {
+        final ReplicatedSolrServer server = new ReplicatedSolrServer(
+                ImmutableList.of(StubSolrServer.failing(), StubSolrServer.failing()));
+        try
+        {
+            server.request(new QueryRequest(new SolrQuery("*:*")));
+            fail("no replica answered");
+        } catch (SolrServerException e)
+        {
+            assertEquals(0, server.getOutstanding()[0]);
+            assertEquals(0, server.getOutstanding()[1]);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import junit.framework.TestCase;
+
+/**
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class SGRMatcherTest extends TestCase
+{
+    public void testLocationOfServerUrl()
+    {
+        final SGRMatcher.Factory factory = SGRMatcher.getFactory();
+        factory.setLocation("http://solr.example.org:8983/solr");
+        assertTrue(factory.endpoints.isEmpty());
+        assertEquals("http://solr.example.org:8983/solr", factory.getLocation());
+    }
+    
+    public void testLocationOfEndpoints() throws Exception
+    {
+        final SGRMatcher.Factory factory = SGRMatcher.getFactory();
+        factory.endpoints.add(SGRMatcher.Endpoint.shard("http://a:8983/solr"));
+        factory.endpoints.add(SGRMatcher.Endpoint.shard("http://b:8983/solr"));
+        final String location = factory.getLocation();
+        assertEquals("shard:http://a:8983/solr,shard:http://b:8983/solr", location);
+        
+        final SGRMatcher.Factory restored = SGRMatcher.getFactory();
+        restored.setLocation(location);
+        assertEquals(2, restored.endpoints.size());
+        assertEquals(SGRMatcher.Endpoint.Role.SHARD, restored.endpoints.get(1).role);
+        assertEquals("http://b:8983/solr", restored.endpoints.get(1).url);
+        assertEquals(location, restored.getLocation());
+        assertEquals(location, restored.build().serverUrl);
+    }
+    
+    public void testCacheKeyDependsOnServer() throws Exception
+    {
+        final SGRRecord record = SGRRecord.builder("1").put("collectors", "Morse").build();
+        final String a = cachingMatcher("http://a:8983/solr").cacheKey(record.asMatchable(), null);
+        final String b = cachingMatcher("http://b:8983/solr").cacheKey(record.asMatchable(), null);
+        assertNotNull(a);
+        assertFalse(a.equals(b));
+        assertEquals(a, cachingMatcher("http://a:8983/solr").cacheKey(record.asMatchable(), null));
+    }
+    
+    private static SGRMatcher cachingMatcher(String serverUrl) throws Exception
+    {
+        final SGRMatcher.Factory factory = SGRMatcher.getFactory();
+        factory.serverUrl = serverUrl;
+        factory.cacheSize = 10;
+        return factory.build();
+    }
+}
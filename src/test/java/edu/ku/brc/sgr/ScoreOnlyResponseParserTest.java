@@ -0,0 +1,112 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.impl.XMLResponseParser;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.util.NamedList;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+
+import junit.framework.TestCase;
+
+/**
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ScoreOnlyResponseParserTest extends TestCase
+{
+    private static String response() throws Exception
+    {
+        final InputStream in = ScoreOnlyResponseParserTest.class.getResourceAsStream("mlt-response.xml");
+        final Reader reader = new InputStreamReader(in, Charsets.UTF_8);
+        try { return CharStreams.toString(reader); }
+        finally { reader.close(); }
+    }
+    
+    public void testAgreesWithXmlResponseParser() throws Exception
+    {
+        final String xml = response();
+        final NamedList<Object> full = 
+            new XMLResponseParser().processResponse(new StringReader(xml));
+        final NamedList<Object> scored = 
+            ScoreOnlyResponseParser.INSTANCE.processResponse(new StringReader(xml));
+        
+        final SolrDocumentList docs = (SolrDocumentList) full.get("response");
+        final ScoreOnlyResponseParser.ScoredDocs parsed = 
+            (ScoreOnlyResponseParser.ScoredDocs) scored.get("response");
+        final ScoreOnlyResponseParser.ScoredDocs expected = ScoreOnlyResponseParser.ScoredDocs.of(docs);
+        
+        assertEquals(10, parsed.ids.length);
+        assertEquals(expected.numFound, parsed.numFound);
+        assertEquals(expected.maxScore, parsed.maxScore);
+        for (int i = 0; i < parsed.ids.length; i++)
+        {
+            assertEquals(expected.ids[i], parsed.ids[i]);
+            assertEquals(expected.scores[i], parsed.scores[i]);
+        }
+        assertEquals(ScoreOnlyResponseParser.qTime(full), ScoreOnlyResponseParser.qTime(scored));
+        assertEquals(14, ScoreOnlyResponseParser.qTime(scored));
+    }
+    
+    public void testResultsKeepIdsAndScores() throws Exception
+    {
+        final NamedList<Object> scored = 
+            ScoreOnlyResponseParser.INSTANCE.processResponse(new StringReader(response()));
+        final MatchResults results = ScoreOnlyResponseParser.scored(scored.get("response"))
+            .toMatchResults("1", ScoreOnlyResponseParser.qTime(scored));
+        
+        assertFalse(results.hasRecords());
+        assertEquals("100004", results.getMatchId(0));
+        assertEquals(10.56857f, results.getScore(0));
+        assertEquals(10.56857f, results.maxScore);
+        assertEquals("100004", results.getMatches().get(0).match.id);
+    }
+    
+    public void testAppliesOnlyToIdAndScore()
+    {
+        final SolrQuery query = new SolrQuery();
+        assertFalse(ScoreOnlyResponseParser.applies(query));
+        query.set(CommonParams.FL, "id,score");
+        assertTrue(ScoreOnlyResponseParser.applies(query));
+        query.set(CommonParams.FL, "id score");
+        assertTrue(ScoreOnlyResponseParser.applies(query));
+        query.set(CommonParams.FL, "*,score");
+        assertFalse(ScoreOnlyResponseParser.applies(query));
+    }
+    
+    public void testDoesNotApplyWhenExplaining()
+    {
+        final SolrQuery query = new SolrQuery();
+        query.set(CommonParams.FL, "id,score");
+        query.set(CommonParams.DEBUG_QUERY, true);
+        assertFalse(ScoreOnlyResponseParser.applies(query));
+    }
+}
@@ -0,0 +1,187 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+
+import com.google.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+/**
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+public class ShardedSolrServerTest extends TestCase
+{
+    public void testMergesTopRowsByScore() throws Exception
+    {
+        final ShardedSolrServer server = new ShardedSolrServer(ImmutableList.of(
+                StubSolrServer.returning(4, StubSolrServer.docs("a", 3.0f, "b", 1.0f)),
+                StubSolrServer.returning(9, StubSolrServer.docs("c", 2.0f, "d", 0.5f))));
+        try
+        {
+            final SolrQuery query = new SolrQuery("*:*");
+            query.setRows(3);
+            final QueryResponse resp = server.query(query);
+            
+            final SolrDocumentList docs = resp.getResults();
+            assertEquals(3, docs.size());
+            assertEquals("a", docs.get(0).getFieldValue("id"));
+            assertEquals("c", docs.get(1).getFieldValue("id"));
+            assertEquals("b", docs.get(2).getFieldValue("id"));
+            assertEquals(4, docs.getNumFound());
+            assertEquals(3.0f, docs.getMaxScore(), 0.0f);
+            assertEquals(9, resp.getQTime());
+        } finally
+        {
+            server.close();
+        }
+    }
+    
+    public void testMergesScoreOnlyResults()
+    {
+        final ScoreOnlyResponseParser.ScoredDocs a = new ScoreOnlyResponseParser.ScoredDocs(
+                new String[] {"a", "b"}, new float[] {3.0f, 1.0f}, 2, 3.0f);
+        final ScoreOnlyResponseParser.ScoredDocs c = new ScoreOnlyResponseParser.ScoredDocs(
+                new String[] {"c"}, new float[] {2.0f}, 1, 2.0f);
+        final NamedList<Object> merged = ShardedSolrServer.merge(
+                ImmutableList.<NamedList<?>>of(scored(a), scored(c)), 0, 10);
+        
+        final ScoreOnlyResponseParser.ScoredDocs docs = 
+            (ScoreOnlyResponseParser.ScoredDocs) merged.get("response");
+        assertEquals(ImmutableList.of("a", "c", "b"), ImmutableList.copyOf(docs.ids));
+        assertEquals(3, docs.numFound);
+        assertEquals(3.0f, docs.maxScore, 0.0f);
+    }
+    
+    public void testPagesFromStart() throws Exception
+    {
+        final StubSolrServer a = StubSolrServer.returning(1, 
+                StubSolrServer.docs("a1", 5.0f, "a2", 4.0f, "a3", 3.0f));
+        final StubSolrServer b = StubSolrServer.returning(1, 
+                StubSolrServer.docs("b1", 4.5f, "b2", 1.0f));
+        final ShardedSolrServer server = new ShardedSolrServer(ImmutableList.of(a, b));
+        try
+        {
+            final SolrQuery query = new SolrQuery("*:*");
+            query.setStart(2);
+            query.setRows(2);
+            final SolrDocumentList docs = server.query(query).getResults();
+            
+            assertEquals(2, docs.size());
+            assertEquals("a2", docs.get(0).getFieldValue("id"));
+            assertEquals("a3", docs.get(1).getFieldValue("id"));
+            assertEquals(2, docs.getStart());
+            
+            // Each shard was asked for the top of its hits, the caller's 
+            // query was left alone.
+            assertEquals(0, a.requests.get(0).getInt(CommonParams.START).intValue());
+            assertEquals(4, a.requests.get(0).getInt(CommonParams.ROWS).intValue());
+            assertEquals(2, query.getStart().intValue());
+        } finally
+        {
+            server.close();
+        }
+    }
+    
+    public void testPagesScoreOnlyResultsFromStart()
+    {
+        final ScoreOnlyResponseParser.ScoredDocs a = new ScoreOnlyResponseParser.ScoredDocs(
+                new String[] {"a", "b"}, new float[] {3.0f, 1.0f}, 2, 3.0f);
+        final ScoreOnlyResponseParser.ScoredDocs c = new ScoreOnlyResponseParser.ScoredDocs(
+                new String[] {"c"}, new float[] {2.0f}, 1, 2.0f);
+        final NamedList<Object> merged = ShardedSolrServer.merge(
+                ImmutableList.<NamedList<?>>of(scored(a), scored(c)), 1, 1);
+        
+        final ScoreOnlyResponseParser.ScoredDocs docs = 
+            (ScoreOnlyResponseParser.ScoredDocs) merged.get("response");
+        assertEquals(ImmutableList.of("c"), ImmutableList.copyOf(docs.ids));
+        assertEquals(2.0f, docs.scores[0], 0.0f);
+    }
+    
+    private static NamedList<?> scored(ScoreOnlyResponseParser.ScoredDocs docs)
+    {
+        return StubSolrServer.response(1, docs);
+    }
+    
+    public void testIndexedIdIsSuppliedToEveryShard() throws Exception
+    {
+        final StubSolrServer holding = shard(true);
+        final StubSolrServer other = shard(false);
+        final ShardedSolrServer server = new ShardedSolrServer(ImmutableList.of(holding, other));
+        try
+        {
+            final SolrQuery base = new SolrQuery();
+            base.set(CommonParams.FL, "*,score");
+            final MatchResults results = new MatchableIndexedId("x").doMatch(server, base);
+            
+            assertEquals("x", results.matchedId);
+            assertEquals(2, results.size());
+            
+            // The fetch and the supplied document match went to both shards.
+            assertEquals(2, other.requests.size());
+            final SolrParams match = other.requests.get(1);
+            assertTrue(ImmutableList.copyOf(match.getParams(CommonParams.FQ)).contains("-id:x"));
+        } finally
+        {
+            server.close();
+        }
+    }
+    
+    /**
+     * A shard that answers fetches by id with the document x if it holds it,
+     * and matches with one document of its own.
+     */
+    private static StubSolrServer shard(final boolean holdsX)
+    {
+        return new StubSolrServer()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            NamedList<Object> respond(SolrParams params)
+            {
+                if ("id:x".equals(params.get(CommonParams.Q)))
+                {
+                    final SolrDocumentList docs = StubSolrServer.docs();
+                    if (holdsX)
+                    {
+                        final SolrDocument doc = new SolrDocument();
+                        doc.addField("id", "x");
+                        doc.addField("collectors", "Morse");
+                        docs.add(doc);
+                        docs.setNumFound(1);
+                    }
+                    return response(1, docs);
+                }
+                return response(2, StubSolrServer.docs(holdsX ? "y" : "z", 1.0f));
+            }
+        };
+    }
+}
@@ -0,0 +1,125 @@
+/* This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/**
+ * 
+ */
+package edu.ku.brc.sgr;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A server answering requests without SOLR, for testing the servers that
+ * combine several others. Every request is recorded.
+ * 
+ * @author ben
+ *
+ * @code_status Alpha
+ *
+ * Created Date: Oct 17, 2026
+ *
+ */
+abstract class StubSolrServer extends SolrServer
+{
+    private static final long serialVersionUID = 1L;
+    
+    final List<SolrParams> requests = Lists.newArrayList();
+    
+    @Override
+    public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException
+    {
+        synchronized (requests) { requests.add(request.getParams()); }
+        return respond(request.getParams());
+    }
+    
+    abstract NamedList<Object> respond(SolrParams params) throws SolrServerException, IOException;
+    
+    /**
+     * A server that always answers with <code>docs</code>.
+     */
+    static StubSolrServer returning(final int qTime, final SolrDocumentList docs)
+    {
+        return new StubSolrServer()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            NamedList<Object> respond(SolrParams params)
+            {
+                return response(qTime, docs);
+            }
+        };
+    }
+    
+    /**
+     * A server that always fails.
+     */
+    static StubSolrServer failing()
+    {
+        return new StubSolrServer()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            NamedList<Object> respond(SolrParams params) throws SolrServerException
+            {
+                throw new SolrServerException("down");
+            }
+        };
+    }
+    
+    static NamedList<Object> response(int qTime, Object docs)
+    {
+        final NamedList<Object> header = new SimpleOrderedMap<Object>();
+        header.add("status", 0);
+        header.add("QTime", qTime);
+        final NamedList<Object> response = new SimpleOrderedMap<Object>();
+        response.add("responseHeader", header);
+        response.add("response", docs);
+        return response;
+    }
+    
+    /**
+     * @param idsAndScores alternating ids and scores, best first
+     */
+    static SolrDocumentList docs(Object... idsAndScores)
+    {
+        final SolrDocumentList docs = new SolrDocumentList();
+        float maxScore = 0.0f;
+        for (int i = 0; i < idsAndScores.length; i += 2)
+        {
+            final SolrDocument doc = new SolrDocument();
+            doc.addField("id", idsAndScores[i]);
+            doc.addField("score", idsAndScores[i + 1]);
+            maxScore = Math.max(maxScore, (Float) idsAndScores[i + 1]);
+            docs.add(doc);
+        }
+        docs.setNumFound(docs.size());
+        docs.setStart(0);
+        docs.setMaxScore(maxScore);
+        return docs;
+    }
+}
@@ -0,0 +1,69 @@
+package edu.ku.brc.sgr.datamodel
+
+import scala.collection.JavaConversions._
+
+import edu.ku.brc.sgr.PartitionedBatchRun
+
+import junit.framework.Assert._
+import junit.framework.TestCase
+
+class BatchMatchResultSetTest extends TestCase {
+  
+  override def setUp() : Unit = TestDb.start()
+  
+  private def all(resultSet: BatchMatchResultSet, pageSize: Int) = 
+    resultSet.iterateItems(pageSize).toList
+  
+  def testTiedScoresAcrossPageBoundaries() : Unit = {
+    val set = TestDb.resultSet("a")
+    val other = TestDb.resultSet("b")
+    // Scores that have no exact decimal form, with long runs of ties.
+    val scores = (0 until 40) map (i => Array(1.1f, 0.7f, 0.3f, 2.9f)(i % 4))
+    TestDb.addItems(set, scores)
+    TestDb.addItems(other, scores)
+    
+    for (pageSize <- List(1, 3, 4, 7, 100)) {
+      val items = all(set, pageSize)
+      assertEquals(40, items.size)
+      assertEquals(40, (items map (_.id)).toSet.size)
+      assertTrue(items forall (_.batchMatchResultSetId == set.id))
+      for ((a, b) <- items zip items.tail) {
+        assertTrue(a.maxScore > b.maxScore || (a.maxScore == b.maxScore && a.id > b.id))
+      }
+    }
+  }
+  
+  def testTopItemsOfOneSet() : Unit = {
+    val set = TestDb.resultSet("a")
+    val other = TestDb.resultSet("b")
+    TestDb.addItems(set, List(0.5f, 0.25f))
+    TestDb.addItems(other, List(3.0f))
+    
+    val top = set.getTopItems(10)
+    assertEquals(List(0.5f, 0.25f), top.toList map (_.maxScore))
+  }
+  
+  def testCompletedIdsOfOneSet() : Unit = {
+    val set = TestDb.resultSet("a")
+    val other = TestDb.resultSet("b")
+    TestDb.addItems(set, List(1.0f, 2.0f, 3.0f))
+    TestDb.addItems(other, List(1.0f))
+    
+    val ids = AccumulateResults.completedIds(set)
+    assertEquals(3, ids.size)
+    assertTrue(ids.contains("a2"))
+    assertFalse(ids.contains("b0"))
+  }
+  
+  def testCompletedIdsOfOnePartition() : Unit = {
+    val set = TestDb.resultSet("a")
+    TestDb.addItems(set, (0 until 40) map (_ => 1.0f))
+    
+    val inPartition = (id: String) => PartitionedBatchRun.partitionOf(id, 3) == 1
+    val ids = AccumulateResults.completedIds(set, inPartition)
+    val expected = (0 until 40) map ("a" + _) filter inPartition
+    assertTrue(expected.size > 0 && expected.size < 40)
+    assertEquals(expected.size, ids.size)
+    assertTrue(expected forall (ids.contains(_)))
+  }
+}
@@ -0,0 +1,66 @@
+package edu.ku.brc.sgr.datamodel
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, EOFException}
+
+import scala.collection.JavaConversions._
+
+import org.squeryl.PrimitiveTypeMode._
+
+import junit.framework.Assert._
+import junit.framework.TestCase
+
+class ResultSetTransferTest extends TestCase {
+
+  override def setUp() : Unit = TestDb.start()
+
+  private def items(resultSet: BatchMatchResultSet) =
+    resultSet.iterateItems(7).toList map (i => (i.matchedId, i.qTime, i.maxScore)) sortBy (_._1)
+
+  private def nSets : Long = transaction {
+    val n : Long = from(BatchMatchSchema.resultSets)(s => compute(count))
+    n
+  }
+
+  private def nItems : Long = transaction {
+    val n : Long = from(BatchMatchSchema.items)(i => compute(count))
+    n
+  }
+
+  private def export(resultSet: BatchMatchResultSet) : Array[Byte] = {
+    val out = new ByteArrayOutputStream
+    ResultSetTransfer.exportTo(resultSet, out)
+    out.toByteArray
+  }
+
+  def testRoundTrip() : Unit = {
+    val set = TestDb.resultSet("a")
+    TestDb.addItems(set, (0 until 50) map (i => (i % 9) * 0.37f))
+
+    val bytes = export(set)
+    val copy = ResultSetTransfer.importFrom(new ByteArrayInputStream(bytes))
+
+    assertFalse(copy.id == set.id)
+    assertEquals(set.name, copy.name)
+    assertEquals(set.query, copy.query)
+    assertEquals(50L, copy.nItems)
+    assertEquals(items(set), items(copy))
+    // The same match configuration is found rather than inserted again.
+    assertEquals(set.matchConfigurationId, copy.matchConfigurationId)
+  }
+
+  def testTruncatedImportLeavesNothing() : Unit = {
+    val set = TestDb.resultSet("a")
+    TestDb.addItems(set, (0 until 2000) map (i => (i % 97) * 0.01f))
+
+    val bytes = export(set)
+    val before = nSets
+    try {
+      ResultSetTransfer.importFrom(new ByteArrayInputStream(bytes, 0, bytes.length - 64))
+      fail("imported a truncated export")
+    } catch {
+      case e: EOFException =>
+    }
+    assertEquals(before, nSets)
+    assertEquals(2000L, nItems)
+  }
+}
@@ -0,0 +1,35 @@
+package edu.ku.brc.sgr.datamodel
+
+import org.squeryl.PrimitiveTypeMode._
+import org.squeryl.{Session, SessionFactory}
+import org.squeryl.adapters.H2Adapter
+
+/**
+ * A fresh in-memory H2 database in MySQL mode holding the schema, for 
+ * tests of the data model.
+ */
+object TestDb {
+  private var n = 0
+  
+  def start() : Unit = synchronized {
+    Class.forName("org.h2.Driver")
+    n += 1
+    val url = "jdbc:h2:mem:sgr" + n + ";MODE=MySQL;DB_CLOSE_DELAY=-1"
+    SessionFactory.concreteFactory = Some(() => 
+      Session.create(java.sql.DriverManager.getConnection(url), new H2Adapter))
+    transaction { BatchMatchSchema.create }
+  }
+  
+  def resultSet(name: String) : BatchMatchResultSet = transaction {
+    val mc = BatchMatchSchema.matchConfigurations.insert(
+        new MatchConfiguration(name, "", "http://localhost:8983/solr", 10, true, 
+                               "collectors", "", ""))
+    BatchMatchSchema.resultSets.insert(
+        new BatchMatchResultSet(name, "", "q=*:*", None, None, mc.id))
+  }
+  
+  def addItems(resultSet: BatchMatchResultSet, scores: Seq[Float]) : Unit = transaction {
+    BatchMatchSchema.items.insert(scores.zipWithIndex map { case (score, i) => 
+      new BatchMatchResultItem(resultSet.id, resultSet.name + i, i % 5, score) })
+  }
+}
@@ -0,0 +1,38 @@
+package edu.ku.brc.sgr.datamodel
+
+import org.squeryl.PrimitiveTypeMode._
+
+import junit.framework.Assert._
+import junit.framework.TestCase
+
+class UpgradeSchemaTest extends TestCase {
+
+  override def setUp() : Unit = TestDb.start()
+
+  private def fingerprints : List[String] = transaction {
+    from(BatchMatchSchema.resultSets)(s => select(s.queryFingerprint) orderBy(s.id asc)).toList
+  }
+
+  def testFillsFingerprintsAcrossBatches() : Unit = {
+    val mcId = TestDb.resultSet("first").matchConfigurationId
+    // More than two pages of the backfill, the last one partial.
+    transaction {
+      for (i <- 0 until 1100) BatchMatchSchema.resultSets.insert(
+          new BatchMatchResultSet("s" + i, "", "q=name:s" + (i % 3), None, None, mcId))
+    }
+    assertEquals(1101, fingerprints count (_ == ""))
+
+    DataModel.upgradeSchema()
+
+    val filled = fingerprints
+    assertEquals(1101, filled.size)
+    assertFalse(filled contains "")
+    assertEquals(DataModel.queryFingerprintOf("q=*:*"), filled.head)
+    assertEquals(DataModel.queryFingerprintOf("q=name:s1"), filled(2))
+    assertEquals(4, filled.toSet.size)
+
+    // Running it again changes nothing.
+    DataModel.upgradeSchema()
+    assertEquals(filled, fingerprints)
+  }
+}